@@ -0,0 +1,91 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Runs the analysis on data that is already loaded, so parsing is not part of the score.
+// Throughput is in full passes per second; run with -prof gc for the allocation rate:
+//
+//   java -jar benchmarks/target/benchmarks.jar AnalysisBenchmark -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g", "--add-modules", "jdk.incubator.vector"})
+public class AnalysisBenchmark {
+    @Param({"10000", "1000000", "50000000"})
+    public int rows;
+
+    private Object menuItems;
+    private Object table;
+    private Object offHeapTable;
+    private Object query;
+    private Object smallSorter;
+    private Object largeSorter;
+
+    @Setup
+    public void setUp() throws Throwable {
+        String path = MenuData.csv(rows).toString();
+        menuItems = Analyzer.readMappedCSV(path);
+        table = Analyzer.readMappedTable(path);
+        offHeapTable = Analyzer.readOffHeapTable(path);
+        smallSorter = Analyzer.externalSorter(16L << 20);
+        largeSorter = Analyzer.externalSorter(Long.MAX_VALUE);
+        query = Analyzer.parseQuery("avg(calories) where available and vegetarian and spicyLevel >= 3 group by cuisineType");
+    }
+
+    // Every DataAnalyzer report comes out of this one scan over the table columns
+    @Benchmark
+    public Object menuStats() throws Throwable {
+        return Analyzer.statsOf(table);
+    }
+
+    // The same scan, also filling the histograms and cross-tabs
+    @Benchmark
+    public Object menuStatsWithHistograms() throws Throwable {
+        return Analyzer.statsWithHistograms(table, 10, 100, 10);
+    }
+
+    // The same scan over an OffHeapMenuTable, which copies blocks of rows out of direct buffers
+    @Benchmark
+    public Object offHeapMenuStats() throws Throwable {
+        return Analyzer.statsOf(offHeapTable);
+    }
+
+    // A filtered group-by through the compiled query layer
+    @Benchmark
+    public Object query() throws Throwable {
+        return Analyzer.runQuery(query, table);
+    }
+
+    // Exact price median through ExternalSorter with a 16 MB budget, which spills and merges
+    // runs once rows exceed about 700K
+    @Benchmark
+    public Object exactMedianSpilled() throws Throwable {
+        return Analyzer.exactPriceQuantiles(smallSorter, table, 0.5);
+    }
+
+    // The same with an unbounded budget: one in-memory sort, no temp files
+    @Benchmark
+    public Object exactMedianInMemory() throws Throwable {
+        return Analyzer.exactPriceQuantiles(largeSorter, table, 0.5);
+    }
+
+    // What DataAnalyzer(List<MenuItem>) does before it can scan
+    @Benchmark
+    public Object tableFromItems() throws Throwable {
+        return Analyzer.tableOf(menuItems);
+    }
+}
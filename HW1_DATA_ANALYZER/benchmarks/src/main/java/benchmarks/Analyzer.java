@@ -0,0 +1,320 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+// The analyzer classes live in the default package, which a named package cannot import,
+// and JMH refuses benchmarks in the default package. The benchmarks therefore call the
+// analyzer through constant method handles, which the JIT inlines like direct calls.
+final class Analyzer {
+    private static final MethodHandle CSV_READ_CSV;
+    private static final MethodHandle CSV_READ_TABLE;
+    private static final MethodHandle CSV_READ_SUMMARY;
+    private static final MethodHandle MAPPED_READ_CSV;
+    private static final MethodHandle MAPPED_READ_TABLE;
+    private static final MethodHandle MAPPED_READ_COLUMNS;
+    private static final MethodHandle MAPPED_READ_OFF_HEAP_TABLE;
+    private static final MethodHandle NEW_PARALLEL_READER;
+    private static final MethodHandle PARALLEL_READ_TABLE;
+    private static final MethodHandle NEW_GZIP_READER;
+    private static final MethodHandle GZIP_READ_TABLE;
+    private static final MethodHandle TABLE_OF;
+    private static final MethodHandle STATS_OF;
+    private static final MethodHandle STATS_WITH_HISTOGRAMS;
+    private static final MethodHandle QUERY_PARSE;
+    private static final MethodHandle QUERY_RUN;
+    private static final MethodHandle NEW_EXTERNAL_SORTER;
+    private static final MethodHandle WRITE_COLUMN_FILE;
+    private static final MethodHandle OPEN_COLUMN_FILE;
+    private static final MethodHandle COLUMN_FILE_RUN;
+    private static final MethodHandle COLUMN_FILE_READ;
+    private static final MethodHandle NEW_SALES_JOIN;
+    private static final MethodHandle SALES_JOIN;
+    private static final MethodHandle EXACT_QUANTILES;
+    private static final MethodHandle GENERATE;
+    private static final MethodHandle SCALAR_REDUCTIONS;
+    private static final MethodHandle PREFERRED_REDUCTIONS;
+    private static final MethodHandle MAX_DOUBLE;
+    private static final MethodHandle INDEX_OF_DOUBLE;
+    private static final MethodHandle MASKED_SUM;
+    private static final MethodHandle SCALAR_TOKENIZER;
+    private static final MethodHandle PREFERRED_TOKENIZER;
+    private static final MethodHandle TOKENIZE;
+    private static final Class<?> COLUMN;
+    private static final Object PRICE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> csvReader = Class.forName("CSVReader");
+            Class<?> mappedReader = Class.forName("MappedCSVReader");
+            Class<?> parallelReader = Class.forName("ParallelCSVReader");
+            Class<?> gzipReader = Class.forName("GzipCSVReader");
+            Class<?> menuTable = Class.forName("MenuTable");
+            Class<?> offHeapTable = Class.forName("OffHeapMenuTable");
+            Class<?> menuColumns = Class.forName("MenuColumns");
+            Class<?> menuStats = Class.forName("MenuStats");
+            Class<?> generator = Class.forName("MenuDataGenerator");
+            Class<?> menuQuery = Class.forName("MenuQuery");
+            Class<?> reductions = Class.forName("ColumnReductions");
+            Class<?> externalSorter = Class.forName("ExternalSorter");
+            Class<?> metric = Class.forName("MenuStats$Metric");
+            Class<?> salesJoin = Class.forName("SalesJoin");
+            Class<?> tokenizer = Class.forName("CsvTokenizer");
+            Class<?> columnFile = Class.forName("MenuColumnFile");
+
+            Object csv = csvReader.getConstructor().newInstance();
+            Object mapped = mappedReader.getConstructor().newInstance();
+            CSV_READ_CSV = lookup.findVirtual(csvReader, "readCSV", MethodType.methodType(List.class, String.class))
+                .bindTo(csv).asType(MethodType.methodType(Object.class, String.class));
+            CSV_READ_TABLE = lookup.findVirtual(csvReader, "readTable", MethodType.methodType(menuTable, String.class))
+                .bindTo(csv).asType(MethodType.methodType(Object.class, String.class));
+            CSV_READ_SUMMARY = lookup.findVirtual(csvReader, "readSummary",
+                    MethodType.methodType(Class.forName("MenuSummary"), String.class, boolean.class))
+                .bindTo(csv).asType(MethodType.methodType(Object.class, String.class, boolean.class));
+            MAPPED_READ_CSV = lookup.findVirtual(mappedReader, "readCSV", MethodType.methodType(List.class, String.class))
+                .bindTo(mapped).asType(MethodType.methodType(Object.class, String.class));
+            MAPPED_READ_TABLE = lookup.findVirtual(mappedReader, "readTable", MethodType.methodType(menuTable, String.class))
+                .bindTo(mapped).asType(MethodType.methodType(Object.class, String.class));
+            MAPPED_READ_COLUMNS = lookup.findVirtual(mappedReader, "readTable", MethodType.methodType(menuTable, String.class, Set.class))
+                .bindTo(mapped).asType(MethodType.methodType(Object.class, String.class, Set.class));
+            COLUMN = Class.forName("MenuColumns$Column");
+            MAPPED_READ_OFF_HEAP_TABLE = lookup.findVirtual(mappedReader, "readOffHeapTable", MethodType.methodType(offHeapTable, String.class))
+                .bindTo(mapped).asType(MethodType.methodType(Object.class, String.class));
+            NEW_PARALLEL_READER = lookup.findConstructor(parallelReader, MethodType.methodType(void.class, int.class))
+                .asType(MethodType.methodType(Object.class, int.class));
+            PARALLEL_READ_TABLE = lookup.findVirtual(parallelReader, "readTable", MethodType.methodType(menuTable, String.class))
+                .asType(MethodType.methodType(Object.class, Object.class, String.class));
+            NEW_GZIP_READER = lookup.findConstructor(gzipReader, MethodType.methodType(void.class, int.class))
+                .asType(MethodType.methodType(Object.class, int.class));
+            GZIP_READ_TABLE = lookup.findVirtual(gzipReader, "readTable", MethodType.methodType(menuTable, String.class))
+                .asType(MethodType.methodType(Object.class, Object.class, String.class));
+            TABLE_OF = lookup.findStatic(menuTable, "of", MethodType.methodType(menuTable, List.class))
+                .asType(MethodType.methodType(Object.class, Object.class));
+            STATS_OF = lookup.findStatic(menuStats, "of", MethodType.methodType(menuStats, menuColumns))
+                .asType(MethodType.methodType(Object.class, Object.class));
+            STATS_WITH_HISTOGRAMS = lookup.findStatic(menuStats, "withHistograms",
+                    MethodType.methodType(menuStats, menuColumns, double.class, double.class, double.class))
+                .asType(MethodType.methodType(Object.class, Object.class, double.class, double.class, double.class));
+            QUERY_PARSE = lookup.findStatic(menuQuery, "parse", MethodType.methodType(menuQuery, String.class))
+                .asType(MethodType.methodType(Object.class, String.class));
+            QUERY_RUN = lookup.findVirtual(menuQuery, "run",
+                    MethodType.methodType(Class.forName("MenuQuery$Result"), menuColumns))
+                .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+            WRITE_COLUMN_FILE = lookup.findStatic(columnFile, "write", MethodType.methodType(void.class, menuColumns, Path.class))
+                .asType(MethodType.methodType(void.class, Object.class, Path.class));
+            OPEN_COLUMN_FILE = lookup.findStatic(columnFile, "open", MethodType.methodType(columnFile, Path.class))
+                .asType(MethodType.methodType(Object.class, Path.class));
+            COLUMN_FILE_RUN = lookup.findVirtual(columnFile, "run",
+                    MethodType.methodType(Class.forName("MenuQuery$Result"), menuQuery))
+                .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+            COLUMN_FILE_READ = lookup.findVirtual(columnFile, "readTable", MethodType.methodType(menuTable, Set.class))
+                .asType(MethodType.methodType(Object.class, Object.class, Set.class));
+            NEW_EXTERNAL_SORTER = lookup.findConstructor(externalSorter, MethodType.methodType(void.class, long.class))
+                .asType(MethodType.methodType(Object.class, long.class));
+            EXACT_QUANTILES = lookup.findVirtual(externalSorter, "quantiles",
+                    MethodType.methodType(double[].class, menuColumns, metric, double[].class))
+                .asFixedArity()
+                .asType(MethodType.methodType(double[].class, Object.class, Object.class, Object.class, double[].class));
+            PRICE = metric.getField("PRICE").get(null);
+            NEW_SALES_JOIN = lookup.findConstructor(salesJoin, MethodType.methodType(void.class, long.class))
+                .asType(MethodType.methodType(Object.class, long.class));
+            SALES_JOIN = lookup.findVirtual(salesJoin, "join",
+                    MethodType.methodType(Class.forName("SalesJoin$Result"), menuColumns, Path.class))
+                .asType(MethodType.methodType(Object.class, Object.class, Object.class, Path.class));
+            GENERATE = lookup.findStatic(generator, "main", MethodType.methodType(void.class, String[].class));
+            SCALAR_REDUCTIONS = lookup.findStatic(reductions, "scalar", MethodType.methodType(reductions))
+                .asType(MethodType.methodType(Object.class));
+            PREFERRED_REDUCTIONS = lookup.findStatic(reductions, "get", MethodType.methodType(reductions))
+                .asType(MethodType.methodType(Object.class));
+            MAX_DOUBLE = lookup.findVirtual(reductions, "max", MethodType.methodType(double.class, double[].class, int.class, int.class))
+                .asType(MethodType.methodType(double.class, Object.class, double[].class, int.class, int.class));
+            INDEX_OF_DOUBLE = lookup.findVirtual(reductions, "indexOf",
+                    MethodType.methodType(int.class, double[].class, int.class, int.class, double.class))
+                .asType(MethodType.methodType(int.class, Object.class, double[].class, int.class, int.class, double.class));
+            MASKED_SUM = lookup.findVirtual(reductions, "maskedSum",
+                    MethodType.methodType(long.class, int[].class, long[].class, int.class, int.class))
+                .asType(MethodType.methodType(long.class, Object.class, int[].class, long[].class, int.class, int.class));
+            SCALAR_TOKENIZER = lookup.findStatic(tokenizer, "scalar", MethodType.methodType(tokenizer))
+                .asType(MethodType.methodType(Object.class));
+            PREFERRED_TOKENIZER = lookup.findStatic(tokenizer, "get", MethodType.methodType(tokenizer))
+                .asType(MethodType.methodType(Object.class));
+            TOKENIZE = lookup.findVirtual(tokenizer, "tokenize",
+                    MethodType.methodType(int.class, ByteBuffer.class, int.class, int.class, int[].class))
+                .asType(MethodType.methodType(int.class, Object.class, ByteBuffer.class, int.class, int.class, int[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Analyzer() {
+    }
+
+    // CSVReader.readCSV: BufferedReader + String.split, returns List<MenuItem>
+    static Object readCSV(String path) throws Throwable {
+        return (Object) CSV_READ_CSV.invokeExact(path);
+    }
+
+    // CSVReader.readTable: loads the binary snapshot next to path, writing it on first use
+    static Object readSnapshotTable(String path) throws Throwable {
+        return (Object) CSV_READ_TABLE.invokeExact(path);
+    }
+
+    // CSVReader.readSummary: the cached aggregates next to path, computing them on first use
+    static Object readCachedSummary(String path, boolean distributions) throws Throwable {
+        return (Object) CSV_READ_SUMMARY.invokeExact(path, distributions);
+    }
+
+    // MappedCSVReader.readCSV: memory-mapped byte parsing, returns List<MenuItem>
+    static Object readMappedCSV(String path) throws Throwable {
+        return (Object) MAPPED_READ_CSV.invokeExact(path);
+    }
+
+    // MappedCSVReader.readTable: memory-mapped byte parsing straight into a MenuTable
+    static Object readMappedTable(String path) throws Throwable {
+        return (Object) MAPPED_READ_TABLE.invokeExact(path);
+    }
+
+    // MappedCSVReader.readTable(path, columns) with columns from columns()
+    static Object readMappedColumns(String path, Set<?> columns) throws Throwable {
+        return (Object) MAPPED_READ_COLUMNS.invokeExact(path, columns);
+    }
+
+    // An EnumSet of MenuColumns.Column by constant name
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Set<?> columns(String... names) {
+        Set columns = EnumSet.noneOf((Class) COLUMN);
+        for (String name : names) {
+            columns.add(Enum.valueOf((Class) COLUMN, name));
+        }
+        return columns;
+    }
+
+    // MappedCSVReader.readOffHeapTable: the same parsing into columns outside the heap
+    static Object readOffHeapTable(String path) throws Throwable {
+        return (Object) MAPPED_READ_OFF_HEAP_TABLE.invokeExact(path);
+    }
+
+    static Object newParallelReader(int threads) throws Throwable {
+        return (Object) NEW_PARALLEL_READER.invokeExact(threads);
+    }
+
+    // ParallelCSVReader.readTable on a reader from newParallelReader
+    static Object readParallelTable(Object reader, String path) throws Throwable {
+        return (Object) PARALLEL_READ_TABLE.invokeExact(reader, path);
+    }
+
+    static Object newGzipReader(int parserThreads) throws Throwable {
+        return (Object) NEW_GZIP_READER.invokeExact(parserThreads);
+    }
+
+    // GzipCSVReader.readTable: inflating on the calling thread, parsing on the reader's threads
+    static Object readGzipTable(Object reader, String path) throws Throwable {
+        return (Object) GZIP_READ_TABLE.invokeExact(reader, path);
+    }
+
+    // MenuTable.of(List<MenuItem>)
+    static Object tableOf(Object menuItems) throws Throwable {
+        return (Object) TABLE_OF.invokeExact(menuItems);
+    }
+
+    // MenuStats.of(MenuColumns): the single pass behind every DataAnalyzer report
+    static Object statsOf(Object table) throws Throwable {
+        return (Object) STATS_OF.invokeExact(table);
+    }
+
+    // MenuStats.withHistograms: the same pass, also counting histograms and cross-tabs
+    static Object statsWithHistograms(Object table, double priceWidth, double caloriesWidth,
+            double preparationTimeWidth) throws Throwable {
+        return (Object) STATS_WITH_HISTOGRAMS.invokeExact(table, priceWidth, caloriesWidth, preparationTimeWidth);
+    }
+
+    // MenuQuery.parse
+    static Object parseQuery(String text) throws Throwable {
+        return (Object) QUERY_PARSE.invokeExact(text);
+    }
+
+    // MenuQuery.run on a query from parseQuery
+    static Object runQuery(Object query, Object table) throws Throwable {
+        return (Object) QUERY_RUN.invokeExact(query, table);
+    }
+
+    // MenuColumnFile.write with the default row group size
+    static void writeColumnFile(Object table, Path path) throws Throwable {
+        WRITE_COLUMN_FILE.invokeExact(table, path);
+    }
+
+    // MenuColumnFile.open: reads just the footer
+    static Object openColumnFile(Path path) throws Throwable {
+        return (Object) OPEN_COLUMN_FILE.invokeExact(path);
+    }
+
+    // MenuColumnFile.run: the query over the row groups its filter can match
+    static Object runColumnFileQuery(Object columnFile, Object query) throws Throwable {
+        return (Object) COLUMN_FILE_RUN.invokeExact(columnFile, query);
+    }
+
+    // MenuColumnFile.readTable of the given columns from every row group
+    static Object readColumnFile(Object columnFile, Set<?> columns) throws Throwable {
+        return (Object) COLUMN_FILE_READ.invokeExact(columnFile, columns);
+    }
+
+    // new ExternalSorter(memoryBudget)
+    static Object externalSorter(long memoryBudget) throws Throwable {
+        return (Object) NEW_EXTERNAL_SORTER.invokeExact(memoryBudget);
+    }
+
+    // ExternalSorter.quantiles of the price column
+    static double[] exactPriceQuantiles(Object sorter, Object table, double... qs) throws Throwable {
+        return (double[]) EXACT_QUANTILES.invokeExact(sorter, table, PRICE, qs);
+    }
+
+    // new SalesJoin(memoryBudget)
+    static Object salesJoin(long memoryBudget) throws Throwable {
+        return (Object) NEW_SALES_JOIN.invokeExact(memoryBudget);
+    }
+
+    // SalesJoin.join of a menu table and a sales CSV
+    static Object joinSales(Object join, Object table, Path sales) throws Throwable {
+        return (Object) SALES_JOIN.invokeExact(join, table, sales);
+    }
+
+    // ColumnReductions.scalar(), or ColumnReductions.get(): vectorized when the fork runs with
+    // --add-modules jdk.incubator.vector
+    static Object reductions(boolean vectorized) throws Throwable {
+        return vectorized ? (Object) PREFERRED_REDUCTIONS.invokeExact() : (Object) SCALAR_REDUCTIONS.invokeExact();
+    }
+
+    static double max(Object reductions, double[] values, int from, int to) throws Throwable {
+        return (double) MAX_DOUBLE.invokeExact(reductions, values, from, to);
+    }
+
+    static int indexOf(Object reductions, double[] values, int from, int to, double value) throws Throwable {
+        return (int) INDEX_OF_DOUBLE.invokeExact(reductions, values, from, to, value);
+    }
+
+    static long maskedSum(Object reductions, int[] values, long[] bits, int from, int to) throws Throwable {
+        return (long) MASKED_SUM.invokeExact(reductions, values, bits, from, to);
+    }
+
+    // CsvTokenizer.scalar(), or CsvTokenizer.get(): vectorized when the fork runs with
+    // --add-modules jdk.incubator.vector
+    static Object tokenizer(boolean vectorized) throws Throwable {
+        return vectorized ? (Object) PREFERRED_TOKENIZER.invokeExact() : (Object) SCALAR_TOKENIZER.invokeExact();
+    }
+
+    static int tokenize(Object tokenizer, ByteBuffer buf, int from, int to, int[] offsets) throws Throwable {
+        return (int) TOKENIZE.invokeExact(tokenizer, buf, from, to, offsets);
+    }
+
+    // MenuDataGenerator.main
+    static void generate(String... args) throws Throwable {
+        GENERATE.invokeExact(args);
+    }
+}
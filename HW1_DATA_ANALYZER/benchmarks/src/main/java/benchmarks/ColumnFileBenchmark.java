@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A selective query (the last 5% of item ids, which the generator writes in order) answered
+// from a MenuColumnFile that skips row groups by their zone maps, against reading the same
+// columns of every row group, and against parsing the CSV for them:
+//
+//   java -jar benchmarks/target/benchmarks.jar ColumnFileBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class ColumnFileBenchmark {
+    @Param({"1000000", "50000000"})
+    public int rows;
+
+    private String csvPath;
+    private Object columnFile;
+    private Object query;
+    private Set<?> queryColumns;
+
+    @Setup
+    public void setUp() throws Throwable {
+        csvPath = MenuData.csv(rows).toString();
+        columnFile = Analyzer.openColumnFile(MenuData.columnFile(rows));
+        query = Analyzer.parseQuery("avg(calories) where itemID > " + (rows - rows / 20)
+            + " and available group by cuisineType");
+        queryColumns = Analyzer.columns("ITEM_ID", "CALORIES", "AVAILABLE", "CUISINE_TYPE");
+    }
+
+    @Benchmark
+    public Object prunedRowGroups() throws Throwable {
+        return Analyzer.runColumnFileQuery(columnFile, query);
+    }
+
+    @Benchmark
+    public Object allRowGroups() throws Throwable {
+        return Analyzer.runQuery(query, Analyzer.readColumnFile(columnFile, queryColumns));
+    }
+
+    @Benchmark
+    public Object parsedCSV() throws Throwable {
+        return Analyzer.runQuery(query, Analyzer.readMappedColumns(csvPath, queryColumns));
+    }
+}
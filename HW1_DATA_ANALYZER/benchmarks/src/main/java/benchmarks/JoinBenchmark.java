@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Joins a fixed 10M-line sales CSV against a menu of the given size, with the menu's item
+// index in memory and Grace-partitioned to disk. Times are per join:
+//
+//   mvn -f benchmarks/pom.xml package
+//   java -jar benchmarks/target/benchmarks.jar JoinBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class JoinBenchmark {
+    private static final int SALES_LINES = 10_000_000;
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private Object table;
+    private Path sales;
+    private Object inMemory;
+    private Object partitioned;
+
+    @Setup
+    public void setUp() throws Throwable {
+        table = Analyzer.readMappedColumns(MenuData.csv(rows).toString(),
+            Analyzer.columns("ITEM_ID", "PRICE", "CALORIES", "CATEGORY_NAME", "CUISINE_TYPE"));
+        sales = MenuData.sales(rows, SALES_LINES);
+        inMemory = Analyzer.salesJoin(1L << 30);
+        // The smallest budget, so the 1M-item menu is split into partitions
+        partitioned = Analyzer.salesJoin(1L << 20);
+    }
+
+    @Benchmark
+    public Object hashJoin() throws Throwable {
+        return Analyzer.joinSales(inMemory, table, sales);
+    }
+
+    @Benchmark
+    public Object graceJoin() throws Throwable {
+        return Analyzer.joinSales(partitioned, table, sales);
+    }
+}
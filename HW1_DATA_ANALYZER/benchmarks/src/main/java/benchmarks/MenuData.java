@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+// Synthetic menu_items.csv-shaped inputs from MenuDataGenerator. Files are seeded, so they
+// are identical across runs, and cached in java.io.tmpdir because the large sizes take a
+// while to write.
+final class MenuData {
+    private MenuData() {
+    }
+
+    static Path csv(int rows) throws Throwable {
+        Path path = Paths.get(System.getProperty("java.io.tmpdir"), "menu-bench-" + rows + ".csv");
+        if (Files.exists(path)) {
+            return path;
+        }
+        Path tmp = Files.createTempFile(path.getParent(), "menu-bench-", ".tmp");
+        Analyzer.generate("--rows", String.valueOf(rows), "--seed", "42", "--out", tmp.toString());
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Another fork wrote the same seeded file first
+            Files.deleteIfExists(tmp);
+        }
+        return path;
+    }
+
+    // lines sales lines (MenuDataGenerator --format sales) of item ids 1..items, the first
+    // items most popular, as menu-bench-sales-ITEMS-LINES.csv.
+    static Path sales(int items, int lines) throws Throwable {
+        Path path = Paths.get(System.getProperty("java.io.tmpdir"), "menu-bench-sales-" + items + "-" + lines + ".csv");
+        if (Files.exists(path)) {
+            return path;
+        }
+        Path tmp = Files.createTempFile(path.getParent(), "menu-bench-", ".tmp");
+        Analyzer.generate("--format", "sales", "--rows", String.valueOf(lines), "--items", String.valueOf(items),
+            "--skew", "1", "--seed", "42", "--out", tmp.toString());
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+        }
+        return path;
+    }
+
+    // The same data as a MenuColumnFile, as menu-bench-N.menucols next to the CSV.
+    static Path columnFile(int rows) throws Throwable {
+        Path csv = csv(rows);
+        Path path = csv.resolveSibling("menu-bench-" + rows + ".menucols");
+        if (!Files.exists(path)) {
+            // write() itself goes through a temporary file and an atomic move
+            Analyzer.writeColumnFile(Analyzer.readMappedTable(csv.toString()), path);
+        }
+        return path;
+    }
+
+    // The same data gzipped, as menu-bench-N.csv.gz next to the CSV.
+    static Path gzip(int rows) throws Throwable {
+        Path csv = csv(rows);
+        Path path = csv.resolveSibling(csv.getFileName() + ".gz");
+        if (Files.exists(path)) {
+            return path;
+        }
+        Path tmp = Files.createTempFile(path.getParent(), "menu-bench-", ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+            Files.copy(csv, out);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+        }
+        return path;
+    }
+}
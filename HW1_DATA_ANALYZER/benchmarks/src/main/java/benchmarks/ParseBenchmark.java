@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Parses a synthetic CSV of the given size with each reader. Throughput is in files per
+// second; run with -prof gc for the allocation rate per file:
+//
+//   mvn -f benchmarks/pom.xml package
+//   java -jar benchmarks/target/benchmarks.jar ParseBenchmark -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class ParseBenchmark {
+    @Param({"10000", "1000000", "50000000"})
+    public int rows;
+
+    private String path;
+    private String gzipPath;
+    private Object parallelReader;
+    private Object gzipReader;
+    private Set<?> reportColumns;
+    private Set<?> priceByCategoryColumns;
+
+    @Setup
+    public void setUp() throws Throwable {
+        path = MenuData.csv(rows).toString();
+        gzipPath = MenuData.gzip(rows).toString();
+        parallelReader = Analyzer.newParallelReader(Runtime.getRuntime().availableProcessors());
+        gzipReader = Analyzer.newGzipReader(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        // What Main loads for its default reports, and for an average price per category alone
+        reportColumns = Analyzer.columns("ITEM_NAME", "PRICE", "CALORIES", "PREPARATION_TIME", "VEGETARIAN",
+            "AVAILABLE", "CATEGORY_NAME");
+        priceByCategoryColumns = Analyzer.columns("PRICE", "CATEGORY_NAME");
+    }
+
+    @Benchmark
+    public Object bufferedReaderSplit() throws Throwable {
+        return Analyzer.readCSV(path);
+    }
+
+    @Benchmark
+    public Object mappedItems() throws Throwable {
+        return Analyzer.readMappedCSV(path);
+    }
+
+    @Benchmark
+    public Object mappedTable() throws Throwable {
+        return Analyzer.readMappedTable(path);
+    }
+
+    @Benchmark
+    public Object mappedReportColumns() throws Throwable {
+        return Analyzer.readMappedColumns(path, reportColumns);
+    }
+
+    @Benchmark
+    public Object mappedPriceByCategoryColumns() throws Throwable {
+        return Analyzer.readMappedColumns(path, priceByCategoryColumns);
+    }
+
+    @Benchmark
+    public Object parallelTable() throws Throwable {
+        return Analyzer.readParallelTable(parallelReader, path);
+    }
+
+    @Benchmark
+    public Object gzipTable() throws Throwable {
+        return Analyzer.readGzipTable(gzipReader, gzipPath);
+    }
+
+    @Benchmark
+    public Object snapshotTable() throws Throwable {
+        return Analyzer.readSnapshotTable(path);
+    }
+
+    // Everything the default reports need, from the summary cache of an unchanged file
+    @Benchmark
+    public Object cachedSummary() throws Throwable {
+        return Analyzer.readCachedSummary(path, false);
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Scalar against jdk.incubator.vector column reductions on MenuTable-shaped arrays. The
+// columns are random rather than parsed, since only their length matters here:
+//
+//   java -jar benchmarks/target/benchmarks.jar ReductionBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g", "--add-modules", "jdk.incubator.vector"})
+public class ReductionBenchmark {
+    @Param({"10000", "1000000", "50000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean vectorized;
+
+    private Object reductions;
+    private double[] price;
+    private int[] preparationTime;
+    private long[] vegetarian;
+
+    @Setup
+    public void setUp() throws Throwable {
+        reductions = Analyzer.reductions(vectorized);
+        Random random = new Random(42);
+        price = new double[rows];
+        preparationTime = new int[rows];
+        vegetarian = new long[(rows + 63) >>> 6];
+        for (int row = 0; row < rows; row++) {
+            price[row] = 4 + random.nextInt(1101) / 100.0;
+            preparationTime[row] = 5 + random.nextInt(26);
+        }
+        for (int word = 0; word < vegetarian.length; word++) {
+            vegetarian[word] = random.nextLong();
+        }
+    }
+
+    // How MenuStats finds the most expensive row
+    @Benchmark
+    public int mostExpensiveRow() throws Throwable {
+        return Analyzer.indexOf(reductions, price, 0, rows, Analyzer.max(reductions, price, 0, rows));
+    }
+
+    // Vegetarian preparation time total, filtered by the vegetarian bitset
+    @Benchmark
+    public long vegetarianPrepTime() throws Throwable {
+        return Analyzer.maskedSum(reductions, preparationTime, vegetarian, 0, rows);
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Scalar against jdk.incubator.vector structural scanning of a mapped CSV, in the chunks
+// MappedCSVReader.parseLines() tokenizes. Times are per file; divide the file size by them
+// for bytes per second:
+//
+//   java -jar benchmarks/target/benchmarks.jar TokenizerBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g", "--add-modules", "jdk.incubator.vector"})
+public class TokenizerBenchmark {
+    private static final int CHUNK = 1 << 14;
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean vectorized;
+
+    private Object tokenizer;
+    private MappedByteBuffer buf;
+    private final int[] offsets = new int[CHUNK];
+
+    @Setup
+    public void setUp() throws Throwable {
+        tokenizer = Analyzer.tokenizer(vectorized);
+        try (FileChannel channel = FileChannel.open(MenuData.csv(rows), StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buf.load();
+    }
+
+    // The number of ',' and '\n' in the file
+    @Benchmark
+    public long structuralScan() throws Throwable {
+        long count = 0;
+        int size = buf.limit();
+        for (int chunk = 0; chunk < size; chunk += CHUNK) {
+            count += Analyzer.tokenize(tokenizer, buf, chunk, Math.min(size, chunk + CHUNK), offsets);
+        }
+        return count;
+    }
+}
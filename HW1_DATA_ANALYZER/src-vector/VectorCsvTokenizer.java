@@ -0,0 +1,71 @@
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+// CsvTokenizer on the jdk.incubator.vector API: compares a whole vector of bytes (32 with
+// AVX2, 64 with AVX-512) against ',' and '\n' at once, packs the matches into one bit per
+// byte and writes the offsets of the set bits. Built and run like VectorReductions.
+//
+// VectorMask.toLong() is not an intrinsic before JDK 18 and runs lane by lane, so the mask
+// is packed by hand instead: as a vector of 0/-1 bytes, viewed as longs, each long's eight
+// sign bits gathered into one byte with a multiply.
+public class VectorCsvTokenizer extends CsvTokenizer {
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final int WORDS = BYTES.length() / 8;
+    private static final long SIGN_BITS = 0x8080808080808080L;
+    // Moves the sign bit of byte k to bit 56 + k
+    private static final long GATHER = 0x0002040810204081L;
+
+    public VectorCsvTokenizer() {
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public int tokenize(ByteBuffer buf, int from, int to, int[] offsets) {
+        // Per call rather than a field: one instance is shared by every parsing thread
+        long[] words = new long[WORDS];
+        long[] newlineWords = new long[WORDS];
+        int count = 0;
+        int i = from;
+        for (int bound = from + BYTES.loopBound(to - from); i < bound; i += BYTES.length()) {
+            ByteVector bytes = ByteVector.fromByteBuffer(BYTES, buf, i, ByteOrder.nativeOrder());
+            VectorMask<Byte> newline = bytes.eq((byte) '\n');
+            bytes.eq((byte) ',').or(newline).toVector().reinterpretAsLongs().intoArray(words, 0);
+            newline.toVector().reinterpretAsLongs().intoArray(newlineWords, 0);
+            long bits = 0;
+            long newlines = 0;
+            for (int word = 0; word < WORDS; word++) {
+                bits |= (((words[word] & SIGN_BITS) * GATHER) >>> 56) << (word * 8);
+                newlines |= (((newlineWords[word] & SIGN_BITS) * GATHER) >>> 56) << (word * 8);
+            }
+            int found = Long.bitCount(bits);
+            // Most vectors hold fewer than eight delimiters, so write eight unconditionally
+            // rather than branch on each; the extra writes land past count and are overwritten.
+            // They stay in bounds: count + 8 <= i - from + 8 <= to - from.
+            for (int k = 0; k < 8; k++) {
+                offsets[count + k] = offset(i, bits, newlines);
+                bits &= bits - 1;
+            }
+            for (int k = 8; k < found; k++) {
+                offsets[count + k] = offset(i, bits, newlines);
+                bits &= bits - 1;
+            }
+            count += found;
+        }
+        return count + super.tokenize(buf, i, to, offsets, count);
+    }
+
+    // The offset of the lowest set bit, as ~offset if it is a newline
+    private static int offset(int base, long bits, long newlines) {
+        int lane = Long.numberOfTrailingZeros(bits);
+        return (base + lane) ^ -(int) ((newlines >>> lane) & 1);
+    }
+}
@@ -0,0 +1,128 @@
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// ColumnReductions on the jdk.incubator.vector API, at the widest vector shape the CPU has.
+// Kept out of src because it only compiles and runs with --add-modules jdk.incubator.vector:
+//
+//   javac --add-modules jdk.incubator.vector -d bin src/*.java src-vector/*.java
+//   java --add-modules jdk.incubator.vector -cp bin Main
+//
+// Results are identical to the scalar implementation: the reductions are either exact
+// (min, max, search) or integer sums accumulated in long lanes.
+public class VectorReductions extends ColumnReductions {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    // Same shape as INTS, so each int vector widens into two of these
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    public VectorReductions() {
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public double max(double[] values, int from, int to) {
+        DoubleVector max = DoubleVector.broadcast(DOUBLES, Double.NEGATIVE_INFINITY);
+        int row = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); row < bound; row += DOUBLES.length()) {
+            max = max.max(DoubleVector.fromArray(DOUBLES, values, row));
+        }
+        double result = max.reduceLanes(VectorOperators.MAX);
+        for (; row < to; row++) {
+            result = Math.max(result, values[row]);
+        }
+        return result;
+    }
+
+    @Override
+    public double min(double[] values, int from, int to) {
+        DoubleVector min = DoubleVector.broadcast(DOUBLES, Double.POSITIVE_INFINITY);
+        int row = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); row < bound; row += DOUBLES.length()) {
+            min = min.min(DoubleVector.fromArray(DOUBLES, values, row));
+        }
+        double result = min.reduceLanes(VectorOperators.MIN);
+        for (; row < to; row++) {
+            result = Math.min(result, values[row]);
+        }
+        return result;
+    }
+
+    @Override
+    public int max(int[] values, int from, int to) {
+        IntVector max = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+        int row = from;
+        for (int bound = from + INTS.loopBound(to - from); row < bound; row += INTS.length()) {
+            max = max.max(IntVector.fromArray(INTS, values, row));
+        }
+        int result = max.reduceLanes(VectorOperators.MAX);
+        for (; row < to; row++) {
+            result = Math.max(result, values[row]);
+        }
+        return result;
+    }
+
+    @Override
+    public int indexOf(double[] values, int from, int to, double value) {
+        if (Double.isNaN(value)) {
+            // Lane-wise EQ never matches NaN
+            return super.indexOf(values, from, to, value);
+        }
+        int row = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); row < bound; row += DOUBLES.length()) {
+            VectorMask<Double> equal = DoubleVector.fromArray(DOUBLES, values, row).eq(value);
+            if (equal.anyTrue()) {
+                return row + equal.firstTrue();
+            }
+        }
+        return super.indexOf(values, row, to, value);
+    }
+
+    @Override
+    public int indexOf(int[] values, int from, int to, int value) {
+        int row = from;
+        for (int bound = from + INTS.loopBound(to - from); row < bound; row += INTS.length()) {
+            VectorMask<Integer> equal = IntVector.fromArray(INTS, values, row).eq(value);
+            if (equal.anyTrue()) {
+                return row + equal.firstTrue();
+            }
+        }
+        return super.indexOf(values, row, to, value);
+    }
+
+    @Override
+    public long sum(int[] values, int from, int to) {
+        LongVector sum = LongVector.zero(LONGS);
+        int row = from;
+        for (int bound = from + INTS.loopBound(to - from); row < bound; row += INTS.length()) {
+            IntVector v = IntVector.fromArray(INTS, values, row);
+            sum = sum.add(v.convertShape(VectorOperators.I2L, LONGS, 0))
+                .add(v.convertShape(VectorOperators.I2L, LONGS, 1));
+        }
+        return sum.reduceLanes(VectorOperators.ADD) + super.sum(values, row, to);
+    }
+
+    @Override
+    public long maskedSum(int[] values, long[] bits, int from, int to) {
+        // Scalar up to a word boundary, so every vector's mask lies within one bitset word
+        int start = Math.min(to, (from + 63) & ~63);
+        long result = super.maskedSum(values, bits, from, start);
+        LongVector sum = LongVector.zero(LONGS);
+        int row = start;
+        for (; row + INTS.length() <= to; row += INTS.length()) {
+            VectorMask<Integer> selected = VectorMask.fromLong(INTS, bits[row >>> 6] >>> (row & 63));
+            IntVector v = IntVector.fromArray(INTS, values, row, selected);
+            sum = sum.add(v.convertShape(VectorOperators.I2L, LONGS, 0))
+                .add(v.convertShape(VectorOperators.I2L, LONGS, 1));
+        }
+        return result + sum.reduceLanes(VectorOperators.ADD) + super.maskedSum(values, bits, row, to);
+    }
+}
@@ -0,0 +1,73 @@
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Follows a CSV that is being appended to, like tail -f. Each poll() parses only the
+// complete lines added since the previous poll into a scratch MenuTable, folds its
+// MenuSummary into the running one and drops the table, so both the time and the memory
+// of an update are proportional to the new rows rather than to the file size. Reports
+// that need the rows themselves (histograms, queries) are not available.
+public class CSVFollower {
+    // Largest slice of new data mapped, and parsed into one scratch table, at once
+    private static final long MAX_WINDOW = 1L << 30;
+
+    private final Path path;
+    private final boolean distributions;
+    private MenuSummary summary;
+    private long offset;
+
+    public CSVFollower(String filePath) {
+        this(filePath, false);
+    }
+
+    // With distributions, the summary also keeps the quantile sketches behind the percentiles
+    public CSVFollower(String filePath, boolean distributions) {
+        this.path = Paths.get(filePath);
+        this.distributions = distributions;
+        reset();
+    }
+
+    // Reads the lines appended since the last call and returns how many rows were added.
+    // A partial last line is left for the next poll. If the file shrank, it is assumed to
+    // have been replaced and is read again from the start.
+    public int poll() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                reset();
+            }
+            long added = 0;
+            while (offset < size) {
+                long length = Math.min(MAX_WINDOW, size - offset);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int end = MappedCSVReader.lastLineEnd(buf, (int) length);
+                if (end == 0) {
+                    // No complete line yet
+                    break;
+                }
+                int start = offset == 0 ? MappedCSVReader.skipLine(buf, 0, end) : 0;
+                MenuTable batch = new MenuTable();
+                MappedCSVReader.parseLines(buf, start, end, MappedCSVReader.tableHandler(batch));
+                if (batch.size() > 0) {
+                    summary.combine(MenuSummary.of(distributions ? MenuStats.withDistributions(batch) : MenuStats.of(batch)));
+                }
+                added += batch.size();
+                offset += end;
+            }
+            return (int) added;
+        }
+    }
+
+    // The aggregates of every row read so far
+    public MenuSummary getSummary() { return summary; }
+    public long getOffset() { return offset; }
+
+    private void reset() {
+        summary = new MenuSummary();
+        offset = 0;
+    }
+}
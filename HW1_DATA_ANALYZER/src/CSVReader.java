@@ -2,14 +2,32 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class CSVReader {
+    public static final String SNAPSHOT_SUFFIX = ".snapshot";
+    public static final String SUMMARY_SUFFIX = ".summary";
+
     public List<MenuItem> readCSV(String filePath) {
+        if (GzipCSVReader.isGzip(filePath)) {
+            return new GzipCSVReader(gzipParserThreads()).readCSV(filePath);
+        }
         List<MenuItem> menuItems = new ArrayList<>();
         String line;
         String csvSplitBy = ",";
+        // Repeated column values share one String instance across all items
+        StringDictionary cuisineTypes = new StringDictionary();
+        StringDictionary categoryNames = new StringDictionary();
+        StringDictionary descriptions = new StringDictionary();
 
         try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
             // Skip header
@@ -24,12 +42,12 @@ public class CSVReader {
                     Double.parseDouble(data[3]),
                     Integer.parseInt(data[4]),
                     Integer.parseInt(data[5]),
-                    data[6],
+                    cuisineTypes.intern(data[6]),
                     Boolean.parseBoolean(data[7]),
                     Integer.parseInt(data[8]),
                     Boolean.parseBoolean(data[9]),
-                    data[10],
-                    data[11]
+                    categoryNames.intern(data[10]),
+                    descriptions.intern(data[11])
                 );
                 menuItems.add(item);
             }
@@ -38,5 +56,188 @@ public class CSVReader {
         }
         return menuItems;
     }
-}
 
+    // Loads only the given columns into a MenuTable (see DataAnalyzer.Report.columns());
+    // the others are skipped without being decoded.
+    public MenuTable readColumns(String filePath, Set<MenuColumns.Column> columns) {
+        return GzipCSVReader.isGzip(filePath)
+            ? new GzipCSVReader(gzipParserThreads()).readTable(filePath, columns)
+            : new MappedCSVReader().readTable(filePath, columns);
+    }
+
+    // Loads the CSV into a MenuTable, going through a binary snapshot next to it
+    // (filePath + ".snapshot"). A snapshot written from the same file contents is loaded
+    // instead of parsing the text; otherwise the CSV is parsed and the snapshot rewritten.
+    public MenuTable readTable(String filePath) {
+        Path csvPath = Paths.get(filePath);
+        Path snapshotPath = Paths.get(filePath + SNAPSHOT_SUFFIX);
+        FileFingerprint source;
+        try {
+            source = FileFingerprint.of(csvPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new MenuTable();
+        }
+
+        MenuTable table = readSnapshot(snapshotPath, source);
+        if (table == null) {
+            table = GzipCSVReader.isGzip(filePath)
+                ? new GzipCSVReader(gzipParserThreads()).readTable(filePath)
+                : new MappedCSVReader().readTable(filePath);
+            writeSnapshot(table, source, snapshotPath);
+        }
+        return table;
+    }
+
+    // Like readTable(), but the table stays outside the Java heap: a fresh snapshot is mapped
+    // rather than read, and otherwise the CSV is parsed into an OffHeapMenuTable and the
+    // snapshot rewritten from it. Only plain CSV files are supported.
+    public OffHeapMenuTable mapTable(String filePath) {
+        if (GzipCSVReader.isGzip(filePath)) {
+            throw new IllegalArgumentException("Off-heap tables are loaded from uncompressed CSV files: " + filePath);
+        }
+        Path snapshotPath = Paths.get(filePath + SNAPSHOT_SUFFIX);
+        FileFingerprint source;
+        try {
+            source = FileFingerprint.of(Paths.get(filePath));
+            if (Files.exists(snapshotPath) && source.equals(MenuSnapshot.readSource(snapshotPath))) {
+                return MenuSnapshot.map(snapshotPath);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new OffHeapMenuTable();
+        }
+
+        OffHeapMenuTable table = new MappedCSVReader().readOffHeapTable(filePath);
+        try {
+            MenuSnapshot.write(table, source, snapshotPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return table;
+    }
+
+    // The aggregates behind the DataAnalyzer reports, through a cache next to the CSV
+    // (filePath + ".summary"). A cache of the same file contents is returned without reading
+    // the CSV; if the file has only been appended to since, just the new lines are parsed and
+    // folded into the cached summary. Otherwise the whole file is summarized. The cache is
+    // rewritten whenever the summary changes. With distributions the summary also holds the
+    // quantile sketches, and a cache without them is not used.
+    public MenuSummary readSummary(String filePath, boolean distributions) {
+        Path csvPath = Paths.get(filePath);
+        Path cachePath = Paths.get(filePath + SUMMARY_SUFFIX);
+        FileFingerprint source;
+        try {
+            source = FileFingerprint.of(csvPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new MenuSummary();
+        }
+
+        SummaryCache.Entry cached = readSummaryCache(cachePath);
+        if (cached != null && (cached.getSummary().hasDistributions() || !distributions)) {
+            if (cached.getSource().equals(source)) {
+                return cached.getSummary();
+            }
+            MenuSummary appended = summarizeAppended(filePath, source, cached, distributions);
+            if (appended != null) {
+                writeSummaryCache(appended, source, cachePath);
+                return appended;
+            }
+        }
+
+        // Exactly the fingerprinted bytes, so lines appended meanwhile are left for the next run
+        MenuTable table = GzipCSVReader.isGzip(filePath)
+            ? new GzipCSVReader(gzipParserThreads()).readTable(filePath)
+            : new MappedCSVReader().readTable(filePath, 0, source.getSize(), EnumSet.allOf(MenuColumns.Column.class));
+        MenuSummary summary = summarize(table, distributions);
+        writeSummaryCache(summary, source, cachePath);
+        return summary;
+    }
+
+    // The cached summary with the lines after its source's size folded in, or null unless
+    // the file still starts with exactly the bytes the cache was computed from.
+    private MenuSummary summarizeAppended(String filePath, FileFingerprint source, SummaryCache.Entry cached,
+            boolean distributions) {
+        FileFingerprint before = cached.getSource();
+        if (GzipCSVReader.isGzip(filePath) || source.getSize() < before.getSize()) {
+            return null;
+        }
+        try {
+            Path csvPath = Paths.get(filePath);
+            if (!before.sameContents(FileFingerprint.ofPrefix(csvPath, before.getSize()))
+                    || !endsWithNewline(csvPath, before.getSize())) {
+                return null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        MenuTable appended = new MappedCSVReader().readTable(filePath, before.getSize(), source.getSize(),
+            EnumSet.allOf(MenuColumns.Column.class));
+        return cached.getSummary().combine(summarize(appended, distributions));
+    }
+
+    private static MenuSummary summarize(MenuTable table, boolean distributions) {
+        return MenuSummary.of(distributions ? MenuStats.withDistributions(table) : MenuStats.of(table));
+    }
+
+    // Whether the first length bytes end with a complete line, so appended bytes start a new row
+    private static boolean endsWithNewline(Path path, long length) throws IOException {
+        if (length == 0) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            return channel.read(last, length - 1) == 1 && last.get(0) == '\n';
+        }
+    }
+
+    private static SummaryCache.Entry readSummaryCache(Path cachePath) {
+        if (!Files.exists(cachePath)) {
+            return null;
+        }
+        try {
+            return SummaryCache.read(cachePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void writeSummaryCache(MenuSummary summary, FileFingerprint source, Path cachePath) {
+        try {
+            SummaryCache.write(summary, source, cachePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // The inflating thread keeps one core busy; the rest parse
+    private static int gzipParserThreads() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    // Returns the snapshot's table if it was written from source, or null otherwise.
+    public MenuTable readSnapshot(Path snapshotPath, FileFingerprint source) {
+        if (!Files.exists(snapshotPath)) {
+            return null;
+        }
+        try {
+            if (source.equals(MenuSnapshot.readSource(snapshotPath))) {
+                return MenuSnapshot.read(snapshotPath);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    public void writeSnapshot(MenuTable table, FileFingerprint source, Path snapshotPath) {
+        try {
+            MenuSnapshot.write(table, source, snapshotPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+
+// A table MappedCSVReader can load rows into: the string columns arrive already encoded
+// with the table's own dictionaries.
+interface ColumnAppender extends MenuColumns {
+    void add(int id, String name, int catID, double itemPrice, int itemCalories, int prepTime,
+             int cuisineCode, boolean isVegetarian, int spicy, boolean isAvailable,
+             int categoryCode, int descriptionCode);
+}
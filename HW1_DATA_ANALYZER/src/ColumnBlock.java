@@ -0,0 +1,79 @@
+
+import java.util.function.Consumer;
+
+// A run of rows as primitive arrays: the unit MenuStats, TopK and the quantile sketches
+// scan. For a MenuTable the block is the table's own arrays, so nothing is copied; for
+// other MenuColumns up to ROWS rows at a time are copied into arrays reused for the whole
+// scan, so a scan needs the same small amount of heap however many rows the table has.
+public final class ColumnBlock {
+    static final int ROWS = 1 << 16;
+
+    // Array indexes [from, to) hold table rows [from + rowBase, to + rowBase)
+    int from;
+    int to;
+    int rowBase;
+    double[] price;
+    int[] calories;
+    int[] preparationTime;
+    int[] cuisineType;
+    int[] categoryName;
+    int[] spicyLevel;
+    int[] description;
+    long[] vegetarian;
+    long[] available;
+
+    private ColumnBlock() {
+    }
+
+    // Calls scan once per block covering rows [from, to) of columns, in row order.
+    static void forEach(MenuColumns columns, int from, int to, Consumer<ColumnBlock> scan) {
+        ColumnBlock block = new ColumnBlock();
+        if (columns instanceof MenuTable) {
+            MenuTable table = (MenuTable) columns;
+            block.from = from;
+            block.to = to;
+            block.price = table.priceColumn();
+            block.calories = table.caloriesColumn();
+            block.preparationTime = table.preparationTimeColumn();
+            block.cuisineType = table.cuisineTypeColumn();
+            block.categoryName = table.categoryNameColumn();
+            block.spicyLevel = table.spicyLevelColumn();
+            block.description = table.descriptionColumn();
+            block.vegetarian = table.vegetarianBits();
+            block.available = table.availableBits();
+            scan.accept(block);
+            return;
+        }
+
+        int capacity = Math.min(ROWS, Math.max(0, to - from));
+        block.price = new double[capacity];
+        block.calories = new int[capacity];
+        block.preparationTime = new int[capacity];
+        block.cuisineType = new int[capacity];
+        block.categoryName = new int[capacity];
+        block.spicyLevel = new int[capacity];
+        block.description = new int[capacity];
+        block.vegetarian = new long[(capacity + 63) >>> 6];
+        block.available = new long[(capacity + 63) >>> 6];
+        for (int start = from; start < to; start += ROWS) {
+            int end = Math.min(to, start + ROWS);
+            columns.copyTo(start, end, block);
+            block.from = 0;
+            block.to = end - start;
+            block.rowBase = start;
+            scan.accept(block);
+        }
+    }
+
+    // Copies bits [from, from + count) of src to bits [0, count) of dst.
+    static void copyBits(long[] src, int from, int count, long[] dst) {
+        int words = (count + 63) >>> 6;
+        int shift = from & 63;
+        int first = from >>> 6;
+        for (int word = 0; word < words; word++) {
+            long low = src[first + word] >>> shift;
+            long high = shift != 0 && first + word + 1 < src.length ? src[first + word + 1] << (64 - shift) : 0;
+            dst[word] = low | high;
+        }
+    }
+}
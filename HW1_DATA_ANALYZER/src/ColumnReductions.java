@@ -0,0 +1,98 @@
+
+// Whole-column reductions (sum, min/max, search, sums filtered by a row bitset) over the
+// primitive arrays of a MenuTable. This class is the scalar implementation; get() returns
+// the jdk.incubator.vector one in src-vector when the JVM runs with
+// --add-modules jdk.incubator.vector and that class is on the class path.
+public class ColumnReductions {
+    private static final ColumnReductions SCALAR = new ColumnReductions();
+    private static final ColumnReductions PREFERRED = load();
+
+    protected ColumnReductions() {
+    }
+
+    public static ColumnReductions get() {
+        return PREFERRED;
+    }
+
+    public static ColumnReductions scalar() {
+        return SCALAR;
+    }
+
+    public boolean isVectorized() {
+        return false;
+    }
+
+    // Largest value in [from, to), negative infinity if the range is empty, NaN if any value is.
+    public double max(double[] values, int from, int to) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int row = from; row < to; row++) {
+            max = Math.max(max, values[row]);
+        }
+        return max;
+    }
+
+    public double min(double[] values, int from, int to) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int row = from; row < to; row++) {
+            min = Math.min(min, values[row]);
+        }
+        return min;
+    }
+
+    public int max(int[] values, int from, int to) {
+        int max = Integer.MIN_VALUE;
+        for (int row = from; row < to; row++) {
+            max = Math.max(max, values[row]);
+        }
+        return max;
+    }
+
+    // First row in [from, to) holding value (NaN matches NaN), or -1.
+    public int indexOf(double[] values, int from, int to, double value) {
+        for (int row = from; row < to; row++) {
+            if (values[row] == value || (Double.isNaN(value) && Double.isNaN(values[row]))) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    public int indexOf(int[] values, int from, int to, int value) {
+        for (int row = from; row < to; row++) {
+            if (values[row] == value) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    public long sum(int[] values, int from, int to) {
+        long sum = 0;
+        for (int row = from; row < to; row++) {
+            sum += values[row];
+        }
+        return sum;
+    }
+
+    // Sum of the values whose row bit is set, as in MenuTable.vegetarianBits().
+    public long maskedSum(int[] values, long[] bits, int from, int to) {
+        long sum = 0;
+        for (int row = from; row < to; row++) {
+            // All ones when the bit is set, zero otherwise: no branch to mispredict
+            int select = (int) -((bits[row >>> 6] >>> row) & 1L);
+            sum += values[row] & select;
+        }
+        return sum;
+    }
+
+    private static ColumnReductions load() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (ColumnReductions) Class.forName("VectorReductions").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Module present but src-vector not compiled in; stay scalar
+            }
+        }
+        return SCALAR;
+    }
+}
@@ -0,0 +1,95 @@
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Parses CSV field values straight from bytes, without building an intermediate String.
+public final class CsvBytes {
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private CsvBytes() {
+    }
+
+    public static int parseInt(ByteBuffer buf, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("Empty int field");
+        }
+        int i = from;
+        boolean negative = false;
+        byte first = buf.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == to) {
+                throw new NumberFormatException(toString(buf, from, to));
+            }
+        }
+        // Accumulate as a negative number so Integer.MIN_VALUE parses without overflow
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; i < to; i++) {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                throw new NumberFormatException(toString(buf, from, to));
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException(toString(buf, from, to));
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    // Plain decimals with up to 15 significant digits are exact as a long mantissa, and
+    // a single division by an exact power of ten rounds the same way Double.parseDouble does.
+    // Anything else (exponents, NaN, very long mantissas) goes through Double.parseDouble.
+    public static double parseDouble(ByteBuffer buf, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            negative = buf.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        for (; i < to; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (seenDot) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return Double.parseDouble(toString(buf, from, to));
+            }
+        }
+        if (digits == 0 || digits > 15) {
+            return Double.parseDouble(toString(buf, from, to));
+        }
+        double value = fractionDigits == 0 ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    // Same contract as Boolean.parseBoolean: "true" in any case, everything else is false.
+    public static boolean parseBoolean(ByteBuffer buf, int from, int to) {
+        return to - from == 4
+            && (buf.get(from) | 0x20) == 't'
+            && (buf.get(from + 1) | 0x20) == 'r'
+            && (buf.get(from + 2) | 0x20) == 'u'
+            && (buf.get(from + 3) | 0x20) == 'e';
+    }
+
+    public static String toString(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buf.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,60 @@
+
+import java.nio.ByteBuffer;
+
+// Finds the structural bytes of CSV text, the ',' and '\n' that end fields and lines, and
+// writes their offsets into a reusable int[]; MappedCSVReader.parseLines() turns those into
+// field ends for the byte parsers in CsvBytes. This class is the scalar implementation;
+// get() returns the jdk.incubator.vector one in src-vector when the JVM runs with
+// --add-modules jdk.incubator.vector and that class is on the class path.
+//
+// Only the vectorized tokenizer pays for the extra pass over the offsets: without it,
+// parseLines() keeps scanning and splitting in one loop.
+public class CsvTokenizer {
+    private static final CsvTokenizer SCALAR = new CsvTokenizer();
+    private static final CsvTokenizer PREFERRED = load();
+
+    protected CsvTokenizer() {
+    }
+
+    public static CsvTokenizer get() {
+        return PREFERRED;
+    }
+
+    public static CsvTokenizer scalar() {
+        return SCALAR;
+    }
+
+    public boolean isVectorized() {
+        return false;
+    }
+
+    // Writes the offset of every ',' and '\n' in [from, to) of buf to offsets, in order, and
+    // returns how many there were. A '\n' is written as ~offset, so it is the negative ones.
+    // offsets must have room for to - from of them.
+    public int tokenize(ByteBuffer buf, int from, int to, int[] offsets) {
+        return tokenize(buf, from, to, offsets, 0);
+    }
+
+    // Same, but writes from offsets[start] on and returns the number written from there.
+    protected final int tokenize(ByteBuffer buf, int from, int to, int[] offsets, int start) {
+        int count = start;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            // Always store, only advance on a match: no branch to mispredict
+            offsets[count] = b == '\n' ? ~i : i;
+            count += (b == ',' ? 1 : 0) | (b == '\n' ? 1 : 0);
+        }
+        return count - start;
+    }
+
+    private static CsvTokenizer load() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (CsvTokenizer) Class.forName("VectorCsvTokenizer").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Module present but src-vector not compiled in; stay scalar
+            }
+        }
+        return SCALAR;
+    }
+}
@@ -1,78 +1,399 @@
 
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class DataAnalyzer {
-    private List<MenuItem> menuItems;
+    // The reports that take no arguments, with the columns each one reads, so a caller can
+    // load just those (CSVReader.readColumns)
+    public enum Report {
+        ITEMS_PER_CATEGORY(MenuColumns.Column.CATEGORY_NAME),
+        AVERAGE_PRICE_PER_CATEGORY(MenuColumns.Column.CATEGORY_NAME, MenuColumns.Column.PRICE),
+        ITEMS_AND_AVERAGE_PRICE_PER_CUISINE(MenuColumns.Column.CUISINE_TYPE, MenuColumns.Column.PRICE),
+        ITEMS_AND_AVERAGE_PRICE_PER_SPICY_LEVEL(MenuColumns.Column.SPICY_LEVEL, MenuColumns.Column.PRICE),
+        PERCENTILES(MenuColumns.Column.CATEGORY_NAME, MenuColumns.Column.PRICE, MenuColumns.Column.CALORIES,
+            MenuColumns.Column.PREPARATION_TIME),
+        MOST_AND_LEAST_EXPENSIVE_ITEMS(MenuColumns.Column.ITEM_NAME, MenuColumns.Column.PRICE),
+        AVERAGE_PREPARATION_TIME(MenuColumns.Column.VEGETARIAN, MenuColumns.Column.PREPARATION_TIME),
+        AVAILABILITY_COUNTS(MenuColumns.Column.AVAILABLE),
+        HIGHEST_CALORIE_ITEM(MenuColumns.Column.ITEM_NAME, MenuColumns.Column.CALORIES),
+        HISTOGRAMS(MenuColumns.Column.PRICE, MenuColumns.Column.CALORIES, MenuColumns.Column.PREPARATION_TIME),
+        CROSS_TABS(MenuColumns.Column.CUISINE_TYPE, MenuColumns.Column.SPICY_LEVEL, MenuColumns.Column.CATEGORY_NAME,
+            MenuColumns.Column.VEGETARIAN);
+
+        private final Set<MenuColumns.Column> columns;
+
+        Report(MenuColumns.Column first, MenuColumns.Column... rest) {
+            this.columns = Collections.unmodifiableSet(EnumSet.of(first, rest));
+        }
+
+        public Set<MenuColumns.Column> columns() {
+            return columns;
+        }
+    }
+
+    // table and stats are null when analyzing a MenuSummary, which has no rows
+    private final MenuColumns table;
+    private final MenuStats stats;
+    private final MenuSummary summary;
+    private ReportWriter output = ReportWriter.text();
 
     public DataAnalyzer(List<MenuItem> menuItems) {
-        this.menuItems = menuItems;
+        this(MenuTable.of(menuItems));
     }
 
-    public void printItemsPerCategory() {
-        Map<String, Long> itemsPerCategory = new HashMap<>();
-        for (MenuItem item : menuItems) {
-            itemsPerCategory.put(item.getCategoryName(), itemsPerCategory.getOrDefault(item.getCategoryName(), 0L) + 1);
+    public DataAnalyzer(MenuColumns table) {
+        this(MenuStats.of(table));
+    }
+
+    public DataAnalyzer(MenuStats stats) {
+        this.table = stats.getTable();
+        this.stats = stats;
+        this.summary = MenuSummary.of(stats);
+    }
+
+    // Reports on merged aggregates, e.g. of several shards; only the reports that need the
+    // rows themselves (top-k, percentiles) are unavailable.
+    public DataAnalyzer(MenuSummary summary) {
+        this.table = null;
+        this.stats = null;
+        this.summary = summary;
+    }
+
+    public MenuStats getStats() {
+        return stats;
+    }
+
+    // Where the reports go, as text on System.out unless set
+    public void setOutput(ReportWriter output) {
+        this.output = output;
+    }
+
+    // Every column read by any of reports.
+    public static Set<MenuColumns.Column> columnsFor(Collection<Report> reports) {
+        Set<MenuColumns.Column> columns = EnumSet.noneOf(MenuColumns.Column.class);
+        for (Report report : reports) {
+            columns.addAll(report.columns());
+        }
+        return columns;
+    }
+
+    // The columns printTopItems reads for the same arguments.
+    public static Set<MenuColumns.Column> topItemsColumns(MenuStats.Metric metric, TopK.GroupBy groupBy) {
+        Set<MenuColumns.Column> columns = EnumSet.of(MenuColumns.Column.ITEM_NAME);
+        switch (metric) {
+            case PRICE: columns.add(MenuColumns.Column.PRICE); break;
+            case CALORIES: columns.add(MenuColumns.Column.CALORIES); break;
+            default: columns.add(MenuColumns.Column.PREPARATION_TIME); break;
+        }
+        if (groupBy == TopK.GroupBy.CATEGORY) {
+            columns.add(MenuColumns.Column.CATEGORY_NAME);
+        } else if (groupBy == TopK.GroupBy.CUISINE) {
+            columns.add(MenuColumns.Column.CUISINE_TYPE);
         }
-        System.out.println("Number of items per category: " + itemsPerCategory);
+        return columns;
+    }
+
+    public void print(Report report) {
+        switch (report) {
+            case ITEMS_PER_CATEGORY: printItemsPerCategory(); break;
+            case AVERAGE_PRICE_PER_CATEGORY: printAveragePricePerCategory(); break;
+            case ITEMS_AND_AVERAGE_PRICE_PER_CUISINE: printItemsAndAveragePricePerCuisine(); break;
+            case ITEMS_AND_AVERAGE_PRICE_PER_SPICY_LEVEL: printItemsAndAveragePricePerSpicyLevel(); break;
+            case PERCENTILES: printPercentiles(); break;
+            case MOST_AND_LEAST_EXPENSIVE_ITEMS: printMostAndLeastExpensiveItems(); break;
+            case AVERAGE_PREPARATION_TIME: printAveragePreparationTime(); break;
+            case AVAILABILITY_COUNTS: printAvailabilityCounts(); break;
+            case HISTOGRAMS: printHistograms(); break;
+            case CROSS_TABS: printCrossTabs(); break;
+            default: printHighestCalorieItem(); break;
+        }
+    }
+
+    public void printItemsPerCategory() {
+        output.value("Number of items per category", summary.getItemCountPerCategory());
     }
 
     public void printAveragePricePerCategory() {
-        Map<String, Double> totalPricesPerCategory = new HashMap<>();
-        Map<String, Long> itemCountPerCategory = new HashMap<>();
+        output.value("Average price per category", summary.getAveragePricePerCategory());
+    }
+
+    public void printItemsAndAveragePricePerCuisine() {
+        output.value("Number of items per cuisine", summary.getItemCountPerCuisine());
+        output.value("Average price per cuisine", summary.getAveragePricePerCuisine());
+    }
+
+    public void printItemsAndAveragePricePerSpicyLevel() {
+        output.value("Number of items per spicy level", summary.getItemCountPerSpicyLevel());
+        output.value("Average price per spicy level", summary.getAveragePricePerSpicyLevel());
+    }
 
-        for (MenuItem item : menuItems) {
-            totalPricesPerCategory.put(item.getCategoryName(), totalPricesPerCategory.getOrDefault(item.getCategoryName(), 0.0) + item.getPrice());
-            itemCountPerCategory.put(item.getCategoryName(), itemCountPerCategory.getOrDefault(item.getCategoryName(), 0L) + 1);
+    // Approximate p50/p90/p99 of price, calories and preparation time, overall and per category.
+    // Builds the sketches with another pass over the table unless the stats (or the summary,
+    // e.g. from CSVReader.readSummary) already have them.
+    public void printPercentiles() {
+        MenuSummary distributions = summary;
+        if (!summary.hasDistributions()) {
+            requireRows();
+            distributions = MenuSummary.of(MenuStats.withDistributions(table));
         }
+        printPercentiles(distributions, "Price", MenuStats.Metric.PRICE);
+        printPercentiles(distributions, "Calories", MenuStats.Metric.CALORIES);
+        printPercentiles(distributions, "Preparation time", MenuStats.Metric.PREPARATION_TIME);
+    }
+
+    private void printPercentiles(MenuSummary summary, String label, MenuStats.Metric metric) {
+        Map<String, String> perCategory = new HashMap<>();
+        Map<String, Map<String, Double>> perCategoryValues = new HashMap<>();
+        summary.getDistributionPerCategory(metric).forEach((category, sketch) -> {
+            perCategory.put(category, percentiles(sketch));
+            perCategoryValues.put(category, percentileValues(sketch));
+        });
+        QuantileSketch overall = summary.getDistribution(metric);
+        output.value(label + " p50/p90/p99", percentileValues(overall), percentiles(overall));
+        output.value(label + " p50/p90/p99 per category", perCategoryValues, perCategory.toString());
+    }
+
+    private static String percentiles(QuantileSketch sketch) {
+        return sketch.getQuantile(0.5) + "/" + sketch.getQuantile(0.9) + "/" + sketch.getQuantile(0.99);
+    }
 
-        Map<String, Double> avgPricePerCategory = new HashMap<>();
-        for (String category : totalPricesPerCategory.keySet()) {
-            avgPricePerCategory.put(category, totalPricesPerCategory.get(category) / itemCountPerCategory.get(category));
+    private static Map<String, Double> percentileValues(QuantileSketch sketch) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        values.put("p50", sketch.getQuantile(0.5));
+        values.put("p90", sketch.getQuantile(0.9));
+        values.put("p99", sketch.getQuantile(0.99));
+        return values;
+    }
+
+    // Item counts per fixed-width bucket of price, calories and preparation time. Uses the
+    // stats' histograms when they were built with MenuStats.withHistograms(), otherwise
+    // scans the table again with widths derived from its values.
+    public void printHistograms() {
+        MenuHistograms histograms = histograms();
+        printHistogram(histograms, "Price", MenuStats.Metric.PRICE);
+        printHistogram(histograms, "Calories", MenuStats.Metric.CALORIES);
+        printHistogram(histograms, "Preparation time", MenuStats.Metric.PREPARATION_TIME);
+    }
+
+    private void printHistogram(MenuHistograms histograms, String label, MenuStats.Metric metric) {
+        output.value(label + " histogram (bucket width " + histograms.getBucketWidth(metric) + ")",
+            histograms.getHistogram(metric));
+    }
+
+    public void printCrossTabs() {
+        MenuHistograms histograms = histograms();
+        output.value("Number of items per cuisine and spicy level", histograms.getItemCountPerCuisineAndSpicyLevel());
+        output.value("Number of items per category and vegetarian", histograms.getItemCountPerCategoryAndVegetarian());
+    }
+
+    private MenuHistograms histograms() {
+        requireRows();
+        if (stats.hasHistograms()) {
+            return stats.getHistograms();
         }
-        System.out.println("Average price per category: " + avgPricePerCategory);
+        double[] widths = MenuHistograms.widths(table, null);
+        return MenuStats.withHistograms(table, widths[0], widths[1], widths[2]).getHistograms();
     }
 
     public void printMostAndLeastExpensiveItems() {
-        MenuItem mostExpensive = Collections.max(menuItems, Comparator.comparingDouble(MenuItem::getPrice));
-        MenuItem leastExpensive = Collections.min(menuItems, Comparator.comparingDouble(MenuItem::getPrice));
-        System.out.println("Most expensive item: " + mostExpensive.getItemName() + " ($" + mostExpensive.getPrice() + ")");
-        System.out.println("Least expensive item: " + leastExpensive.getItemName() + " ($" + leastExpensive.getPrice() + ")");
+        MenuItem mostExpensive = summary.getMostExpensiveItem();
+        MenuItem leastExpensive = summary.getLeastExpensiveItem();
+        output.value("Most expensive item", item(mostExpensive.getItemName(), "price", mostExpensive.getPrice()),
+            mostExpensive.getItemName() + " ($" + mostExpensive.getPrice() + ")");
+        output.value("Least expensive item", item(leastExpensive.getItemName(), "price", leastExpensive.getPrice()),
+            leastExpensive.getItemName() + " ($" + leastExpensive.getPrice() + ")");
     }
 
-    public void printAveragePreparationTime() {
-        double totalVegPrepTime = 0.0;
-        double totalNonVegPrepTime = 0.0;
-        int vegCount = 0;
-        int nonVegCount = 0;
-
-        for (MenuItem item : menuItems) {
-            if (item.isVegetarian()) {
-                totalVegPrepTime += item.getPreparationTime();
-                vegCount++;
-            } else {
-                totalNonVegPrepTime += item.getPreparationTime();
-                nonVegCount++;
+    // An item for the structured formats: {item=Item_14, price=14.85}
+    private static Map<String, Object> item(String name, String metric, Object value) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("item", name);
+        item.put(metric, value);
+        return item;
+    }
+
+    // The k most (highest = true) or least expensive, caloric or slowest to prepare items,
+    // overall or per category or cuisine.
+    public void printTopItems(int k, MenuStats.Metric metric, boolean highest, TopK.GroupBy groupBy) {
+        requireRows();
+        printTopItems(TopK.of(table, k, metric, highest, groupBy));
+    }
+
+    // Prints a selection already made over this analyzer's table, e.g. combined from the
+    // partial heaps of several threads (ParallelCSVReader.aggregate)
+    public void printTopItems(TopK topK) {
+        requireRows();
+        if (topK.getTable() != table) {
+            throw new IllegalArgumentException("Top-k selection of a different table");
+        }
+        int k = topK.getK();
+        MenuStats.Metric metric = topK.getMetric();
+        boolean highest = topK.isHighest();
+        TopK.GroupBy groupBy = topK.getGroupBy();
+        String label = "Top " + k + " items by " + metric.name().toLowerCase().replace('_', ' ')
+            + (highest ? " (highest)" : " (lowest)");
+        if (groupBy == TopK.GroupBy.NONE) {
+            output.value(label, items(topK.getRows(), metric), describe(topK.getRows(), metric));
+        } else {
+            Map<String, String> perGroup = new HashMap<>();
+            Map<String, List<Map<String, Object>>> perGroupItems = new HashMap<>();
+            topK.getRowsPerGroup().forEach((group, rows) -> {
+                perGroup.put(group, describe(rows, metric));
+                perGroupItems.put(group, items(rows, metric));
+            });
+            output.value(label + " per " + groupBy.name().toLowerCase(), perGroupItems, perGroup.toString());
+        }
+    }
+
+    private List<Map<String, Object>> items(int[] rows, MenuStats.Metric metric) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int row : rows) {
+            switch (metric) {
+                case PRICE: items.add(item(table.getItemName(row), "price", table.getPrice(row))); break;
+                case CALORIES: items.add(item(table.getItemName(row), "calories", table.getCalories(row))); break;
+                default: items.add(item(table.getItemName(row), "preparationTime", table.getPreparationTime(row))); break;
+            }
+        }
+        return items;
+    }
+
+    private String describe(int[] rows, MenuStats.Metric metric) {
+        StringBuilder items = new StringBuilder("[");
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            items.append(i > 0 ? ", " : "").append(table.getItemName(row));
+            switch (metric) {
+                case PRICE: items.append(" ($").append(table.getPrice(row)).append(')'); break;
+                case CALORIES: items.append(" (").append(table.getCalories(row)).append(" calories)"); break;
+                default: items.append(" (").append(table.getPreparationTime(row)).append(" minutes)"); break;
+            }
+        }
+        return items.append(']').toString();
+    }
+
+    // Prints an ad-hoc query (see MenuQuery) and its result, e.g.
+    // avg(calories) where vegetarian group by cuisineType: {Italian=512.5, Mexican=498.0}
+    public void printQuery(MenuQuery query) {
+        requireRows();
+        printResult(output, query, query.run(table));
+    }
+
+    private static void printResult(ReportWriter output, MenuQuery query, MenuQuery.Result result) {
+        Object value;
+        if (result.isGrouped()) {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (int i = 0; i < result.size(); i++) {
+                values.put(result.getKey(i), result.getValue(i));
             }
+            value = values;
+        } else {
+            value = result.getValue(0);
+        }
+        output.value(query.toString(), value, result.toString());
+    }
+
+    // Exact medians of price, calories and preparation time, from an external sort of each
+    // column rather than the quantile sketches
+    public void printExactMedians(ExternalSorter sorter) {
+        requireRows();
+        try {
+            output.value("Exact median price", sorter.quantiles(table, MenuStats.Metric.PRICE, 0.5)[0]);
+            output.value("Exact median calories", sorter.quantiles(table, MenuStats.Metric.CALORIES, 0.5)[0]);
+            double preparationTime = sorter.quantiles(table, MenuStats.Metric.PREPARATION_TIME, 0.5)[0];
+            output.value("Exact median preparation time", preparationTime, preparationTime + " minutes");
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+    }
 
-        System.out.println("Average preparation time for vegetarian items: " + (vegCount > 0 ? totalVegPrepTime / vegCount : 0) + " minutes");
-        System.out.println("Average preparation time for non-vegetarian items: " + (nonVegCount > 0 ? totalNonVegPrepTime / nonVegCount : 0) + " minutes");
+    // Writes every row to path as CSV, ordered by metric (stable for equal values)
+    public void writeSorted(ExternalSorter sorter, MenuStats.Metric metric, boolean descending, Path path) {
+        requireRows();
+        try (ExternalSorter.SortedRows rows = sorter.sort(table, metric, descending)) {
+            long written = MenuCSVWriter.write(table, rows, path);
+            output.note("Wrote " + written + " items sorted by " + metric.name().toLowerCase().replace('_', ' ')
+                + (descending ? " (highest first)" : " (lowest first)") + " to " + path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Writes the rows to a MenuColumnFile, for filtered analyses that skip row groups
+    public void writeColumnFile(Path path) {
+        requireRows();
+        try {
+            MenuColumnFile.write(table, path);
+            output.note("Wrote " + table.size() + " items in row groups of " + MenuColumnFile.DEFAULT_ROWS_PER_GROUP
+                + " to " + path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Answers query from a column file, reading only the row groups its filter can match and
+    // the columns it uses, and prints how much of the file that was
+    public static void printQuery(MenuColumnFile file, MenuQuery query, ReportWriter output) {
+        try {
+            printResult(output, query, file.run(query));
+            Set<MenuColumns.Column> columns = query.columns();
+            output.note("  read " + file.matchingGroups(query.where()).size() + " of " + file.getRowGroupCount()
+                + " row groups, " + file.chunkBytes(columns, query.where()) + " of " + file.chunkBytes() + " bytes");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Joins the sales lines in salesPath (see SalesJoin) to the menu and prints what sold
+    public void printSales(SalesJoin join, Path salesPath) {
+        requireRows();
+        try {
+            SalesJoin.Result sales = join.join(table, salesPath);
+            Map<String, Long> lines = new LinkedHashMap<>();
+            lines.put("lines", sales.getSalesLines());
+            lines.put("unmatched", sales.getUnmatchedLines());
+            output.value("Sales lines", lines, sales.getSalesLines() + " (" + sales.getUnmatchedLines()
+                + " for items not on the menu)");
+            output.value("Units sold per category", sales.getUnitsSoldPerCategory());
+            output.value("Revenue per category", sales.getRevenuePerCategory());
+            output.value("Calories sold per category", sales.getCaloriesSoldPerCategory());
+            output.value("Units sold per cuisine", sales.getUnitsSoldPerCuisine());
+            output.value("Revenue per cuisine", sales.getRevenuePerCuisine());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void printAveragePreparationTime() {
+        output.value("Average preparation time for vegetarian items", summary.getAverageVegPrepTime(),
+            summary.getAverageVegPrepTime() + " minutes");
+        output.value("Average preparation time for non-vegetarian items", summary.getAverageNonVegPrepTime(),
+            summary.getAverageNonVegPrepTime() + " minutes");
     }
 
     public void printAvailabilityCounts() {
-        long availableCount = menuItems.stream().filter(MenuItem::isAvailable).count();
-        long unavailableCount = menuItems.size() - availableCount;
-        System.out.println("Number of available items: " + availableCount);
-        System.out.println("Number of unavailable items: " + unavailableCount);
+        output.value("Number of available items", summary.getAvailableCount());
+        output.value("Number of unavailable items", summary.getUnavailableCount());
     }
 
     public void printHighestCalorieItem() {
-        MenuItem highestCalorieItem = Collections.max(menuItems, Comparator.comparingInt(MenuItem::getCalories));
-        System.out.println("Item with the highest calories: " + highestCalorieItem.getItemName() + " (" + highestCalorieItem.getCalories() + " calories)");
+        MenuItem highestCalorie = summary.getHighestCalorieItem();
+        output.value("Item with the highest calories", item(highestCalorie.getItemName(), "calories", highestCalorie.getCalories()),
+            highestCalorie.getItemName() + " (" + highestCalorie.getCalories() + " calories)");
+    }
+
+    private void requireRows() {
+        if (table == null) {
+            throw new IllegalStateException("This report needs the rows, not just a MenuSummary");
+        }
     }
 }
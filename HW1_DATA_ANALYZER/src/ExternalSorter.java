@@ -0,0 +1,449 @@
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Sorts the rows of a menu table by price, calories or preparation time within a fixed
+// memory budget. Rows are read in runs that fill the budget; each run is sorted as two
+// primitive arrays (an order-preserving long encoding of the value, and the row index)
+// and spilled to a temp file, and the runs are then k-way merged. Only (value, row) pairs
+// are sorted, so with an OffHeapMenuTable neither the rows nor the sort have to fit in the
+// heap. The sort is stable: equal values keep their row order.
+public class ExternalSorter {
+    // long key + int row on disk
+    private static final int RECORD_BYTES = 12;
+    // Keys, rows and the merge sort's scratch copies of both
+    private static final int RUN_BYTES_PER_ROW = 24;
+    private static final int MIN_MERGE_BUFFER = 64 << 10;
+    private static final long MIN_BUDGET = 1 << 20;
+
+    private final long memoryBudget;
+    private final Path tempDir;
+
+    public ExternalSorter(long memoryBudget) {
+        this(memoryBudget, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    public ExternalSorter(long memoryBudget, Path tempDir) {
+        if (memoryBudget < MIN_BUDGET) {
+            throw new IllegalArgumentException("memory budget must be at least 1 MB: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        this.tempDir = tempDir;
+    }
+
+    // All rows of table in order of metric. The result must be closed to delete its temp files.
+    public SortedRows sort(MenuColumns table, MenuStats.Metric metric, boolean descending) throws IOException {
+        int runRows = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, memoryBudget / RUN_BYTES_PER_ROW));
+        int capacity = Math.min(runRows, table.size());
+        long[] keys = new long[capacity];
+        int[] rows = new int[capacity];
+        long[] scratchKeys = new long[capacity];
+        int[] scratchRows = new int[capacity];
+        List<Path> spilled = new ArrayList<>();
+        int[] filled = new int[1];
+
+        try {
+            ColumnBlock.forEach(table, 0, table.size(), block -> {
+                for (int row = block.from; row < block.to; row++) {
+                    double value;
+                    switch (metric) {
+                        case PRICE: value = block.price[row]; break;
+                        case CALORIES: value = block.calories[row]; break;
+                        default: value = block.preparationTime[row]; break;
+                    }
+                    if (filled[0] == capacity) {
+                        spilled.add(spill(keys, rows, scratchKeys, scratchRows, filled[0]));
+                        filled[0] = 0;
+                    }
+                    keys[filled[0]] = encode(value, descending);
+                    rows[filled[0]++] = block.rowBase + row;
+                }
+            });
+            if (spilled.isEmpty()) {
+                // Everything fit in one run: no temp files
+                mergeSort(keys, rows, scratchKeys, scratchRows, 0, filled[0]);
+                return new SortedRows(descending, keys, rows, filled[0]);
+            }
+            if (filled[0] > 0) {
+                spilled.add(spill(keys, rows, scratchKeys, scratchRows, filled[0]));
+            }
+        } catch (UncheckedIOException e) {
+            deleteAll(spilled);
+            throw e.getCause();
+        }
+
+        // Merge in passes of at most fanIn runs, until one pass can merge them all
+        List<Path> runs = spilled;
+        int fanIn = (int) Math.max(2, memoryBudget / MIN_MERGE_BUFFER - 1);
+        int bufferSize = (int) Math.min(1 << 20, memoryBudget / (Math.min(fanIn, runs.size()) + 1));
+        List<Path> merged = new ArrayList<>();
+        try {
+            while (runs.size() > fanIn) {
+                for (int from = 0; from < runs.size(); from += fanIn) {
+                    // The merger deletes the batch once it is merged
+                    merged.add(mergeToRun(runs.subList(from, Math.min(runs.size(), from + fanIn)), bufferSize));
+                }
+                runs = merged;
+                merged = new ArrayList<>();
+            }
+            return new SortedRows(descending, new RunMerger(runs, bufferSize), table.size());
+        } catch (IOException e) {
+            deleteAll(runs);
+            deleteAll(merged);
+            throw e;
+        }
+    }
+
+    private Path spill(long[] keys, int[] rows, long[] scratchKeys, int[] scratchRows, int length) {
+        mergeSort(keys, rows, scratchKeys, scratchRows, 0, length);
+        try {
+            Path run = Files.createTempFile(tempDir, "menu-sort-", ".run");
+            try (RunWriter writer = new RunWriter(run, MIN_MERGE_BUFFER * 16)) {
+                for (int i = 0; i < length; i++) {
+                    writer.write(keys[i], rows[i]);
+                }
+            }
+            return run;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path mergeToRun(List<Path> runs, int bufferSize) throws IOException {
+        Path merged = Files.createTempFile(tempDir, "menu-sort-", ".run");
+        try (RunMerger merger = new RunMerger(runs, bufferSize); RunWriter writer = new RunWriter(merged, bufferSize)) {
+            while (merger.next()) {
+                writer.write(merger.key, merger.row);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(merged);
+            throw e;
+        }
+        return merged;
+    }
+
+    // Exact quantiles of metric, interpolated between the two nearest ranks like the
+    // median of an even number of values; NaN for an empty table.
+    public double[] quantiles(MenuColumns table, MenuStats.Metric metric, double... qs) throws IOException {
+        double[] values = new double[qs.length];
+        long n = table.size();
+        if (n == 0) {
+            Arrays.fill(values, Double.NaN);
+            return values;
+        }
+        // The ranks on both sides of each quantile, read in one pass over the sorted rows
+        long[] ranks = new long[qs.length * 2];
+        for (int i = 0; i < qs.length; i++) {
+            double position = qs[i] * (n - 1);
+            ranks[2 * i] = (long) Math.floor(position);
+            ranks[2 * i + 1] = (long) Math.ceil(position);
+        }
+        long[] wanted = Arrays.stream(ranks).sorted().distinct().toArray();
+        double[] found = new double[wanted.length];
+        try (SortedRows sorted = sort(table, metric, false)) {
+            int index = 0;
+            for (long rank = 0; index < wanted.length && sorted.next(); rank++) {
+                if (wanted[index] == rank) {
+                    found[index++] = sorted.value();
+                }
+            }
+        }
+        for (int i = 0; i < qs.length; i++) {
+            double position = qs[i] * (n - 1);
+            double low = found[Arrays.binarySearch(wanted, ranks[2 * i])];
+            double high = found[Arrays.binarySearch(wanted, ranks[2 * i + 1])];
+            values[i] = low + (position - ranks[2 * i]) * (high - low);
+        }
+        return values;
+    }
+
+    // Maps a value to a long whose signed order matches the value's order (reversed when
+    // descending), so runs compare as longs.
+    static long encode(double value, boolean descending) {
+        long bits = Double.doubleToLongBits(value);
+        long key = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        return descending ? ~key : key;
+    }
+
+    static double decode(long key, boolean descending) {
+        long bits = descending ? ~key : key;
+        return Double.longBitsToDouble(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+    }
+
+    // Stable merge sort of keys (and rows alongside) in [from, to), using the scratch arrays.
+    static void mergeSort(long[] keys, int[] rows, long[] scratchKeys, int[] scratchRows, int from, int to) {
+        if (to - from < 32) {
+            for (int i = from + 1; i < to; i++) {
+                long key = keys[i];
+                int row = rows[i];
+                int j = i - 1;
+                for (; j >= from && keys[j] > key; j--) {
+                    keys[j + 1] = keys[j];
+                    rows[j + 1] = rows[j];
+                }
+                keys[j + 1] = key;
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(keys, rows, scratchKeys, scratchRows, from, middle);
+        mergeSort(keys, rows, scratchKeys, scratchRows, middle, to);
+        if (keys[middle - 1] <= keys[middle]) {
+            return;
+        }
+        System.arraycopy(keys, from, scratchKeys, from, to - from);
+        System.arraycopy(rows, from, scratchRows, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && scratchKeys[left] <= scratchKeys[right])) {
+                keys[i] = scratchKeys[left];
+                rows[i] = scratchRows[left++];
+            } else {
+                keys[i] = scratchKeys[right];
+                rows[i] = scratchRows[right++];
+            }
+        }
+    }
+
+    private static void deleteAll(List<Path> runs) {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Row indexes in sorted order, read one at a time: while (rows.next()) { rows.row() ... }
+    public static final class SortedRows implements AutoCloseable {
+        private final boolean descending;
+        private final long size;
+        // Either an in-memory run or a merge of spilled runs
+        private final long[] keys;
+        private final int[] rows;
+        private final RunMerger merger;
+        private int position = -1;
+        private long key;
+        private int row;
+
+        SortedRows(boolean descending, long[] keys, int[] rows, int size) {
+            this.descending = descending;
+            this.keys = keys;
+            this.rows = rows;
+            this.merger = null;
+            this.size = size;
+        }
+
+        SortedRows(boolean descending, RunMerger merger, long size) {
+            this.descending = descending;
+            this.keys = null;
+            this.rows = null;
+            this.merger = merger;
+            this.size = size;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public boolean next() throws IOException {
+            if (merger != null) {
+                if (!merger.next()) {
+                    return false;
+                }
+                key = merger.key;
+                row = merger.row;
+                return true;
+            }
+            if (position + 1 >= size) {
+                return false;
+            }
+            position++;
+            key = keys[position];
+            row = rows[position];
+            return true;
+        }
+
+        public int row() {
+            return row;
+        }
+
+        // The metric value of row()
+        public double value() {
+            return decode(key, descending);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (merger != null) {
+                merger.close();
+            }
+        }
+    }
+
+    private static final class RunWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+
+        RunWriter(Path run, int bufferSize) throws IOException {
+            channel = FileChannel.open(run, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buf = ByteBuffer.allocateDirect(Math.max(RECORD_BYTES, bufferSize / RECORD_BYTES * RECORD_BYTES));
+        }
+
+        void write(long key, int row) throws IOException {
+            if (buf.remaining() < RECORD_BYTES) {
+                flush();
+            }
+            buf.putLong(key).putInt(row);
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // K-way merge of sorted run files through a binary min-heap of run indexes; ties go to
+    // the earlier run, which holds the earlier rows. Deletes the runs when closed.
+    private static final class RunMerger implements AutoCloseable {
+        private final List<Path> runs;
+        private final FileChannel[] channels;
+        private final ByteBuffer[] buffers;
+        private final long[] heads;
+        private final int[] headRows;
+        private final int[] heap;
+        private int heapSize;
+        long key;
+        int row;
+
+        RunMerger(List<Path> runs, int bufferSize) throws IOException {
+            this.runs = new ArrayList<>(runs);
+            int count = runs.size();
+            channels = new FileChannel[count];
+            buffers = new ByteBuffer[count];
+            heads = new long[count];
+            headRows = new int[count];
+            heap = new int[count];
+            try {
+                for (int run = 0; run < count; run++) {
+                    channels[run] = FileChannel.open(runs.get(run), StandardOpenOption.READ);
+                    buffers[run] = ByteBuffer.allocateDirect(Math.max(RECORD_BYTES, bufferSize / RECORD_BYTES * RECORD_BYTES));
+                    buffers[run].limit(0);
+                    if (advance(run)) {
+                        heap[heapSize] = run;
+                        siftUp(heapSize++);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        boolean next() throws IOException {
+            if (heapSize == 0) {
+                return false;
+            }
+            int run = heap[0];
+            key = heads[run];
+            row = headRows[run];
+            if (!advance(run)) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(0);
+            return true;
+        }
+
+        // Loads the next record of run into heads, or returns false at its end.
+        private boolean advance(int run) throws IOException {
+            ByteBuffer buf = buffers[run];
+            if (buf.remaining() < RECORD_BYTES) {
+                buf.compact();
+                int read;
+                do {
+                    read = channels[run].read(buf);
+                } while (read > 0 && buf.hasRemaining());
+                buf.flip();
+                if (buf.remaining() < RECORD_BYTES) {
+                    return false;
+                }
+            }
+            heads[run] = buf.getLong();
+            headRows[run] = buf.getInt();
+            return true;
+        }
+
+        private boolean less(int a, int b) {
+            return heads[a] < heads[b] || (heads[a] == heads[b] && a < b);
+        }
+
+        private void siftUp(int index) {
+            int run = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!less(run, heap[parent])) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = run;
+        }
+
+        private void siftDown(int index) {
+            if (heapSize == 0) {
+                return;
+            }
+            int run = heap[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!less(heap[child], run)) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = run;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (FileChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+            deleteAll(runs);
+        }
+    }
+}
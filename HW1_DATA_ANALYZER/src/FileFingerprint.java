@@ -0,0 +1,88 @@
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Identifies the contents of an input file cheaply: its size, its modification time and a
+// CRC32C of its first and last blocks. Reading two blocks instead of the whole file keeps
+// the check constant-time while still catching edits that preserve size and mtime near
+// either end.
+public final class FileFingerprint {
+    static final int SAMPLE_BYTES = 64 * 1024;
+
+    private final long size;
+    private final long lastModified;
+    private final long checksum;
+
+    public FileFingerprint(long size, long lastModified, long checksum) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+    }
+
+    public static FileFingerprint of(Path path) throws IOException {
+        return ofPrefix(path, Long.MAX_VALUE);
+    }
+
+    // The fingerprint of the first length bytes of path (all of it if shorter), with the
+    // file's current modification time. If a file has only been appended to, the prefix
+    // of its old size has the same contents as the old fingerprint; see sameContents().
+    public static FileFingerprint ofPrefix(Path path, long length) throws IOException {
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = Math.min(length, channel.size());
+            CRC32C crc = new CRC32C();
+            ByteBuffer block = ByteBuffer.allocate((int) Math.min(SAMPLE_BYTES, size));
+            update(crc, channel, block, 0);
+            if (size > SAMPLE_BYTES) {
+                long position = Math.max(SAMPLE_BYTES, size - SAMPLE_BYTES);
+                block.limit((int) (size - position));
+                update(crc, channel, block, position);
+            }
+            return new FileFingerprint(size, lastModified, crc.getValue());
+        }
+    }
+
+    // Fills block from its position 0 up to its limit
+    private static void update(CRC32C crc, FileChannel channel, ByteBuffer block, long position) throws IOException {
+        block.position(0);
+        int read;
+        do {
+            read = channel.read(block, position + block.position());
+        } while (read > 0 && block.hasRemaining());
+        block.flip();
+        crc.update(block);
+    }
+
+    public long getSize() { return size; }
+    public long getLastModified() { return lastModified; }
+    public long getChecksum() { return checksum; }
+
+    // Equal size and checksum, whatever the modification times.
+    public boolean sameContents(FileFingerprint other) {
+        return size == other.size && checksum == other.checksum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FileFingerprint)) {
+            return false;
+        }
+        FileFingerprint other = (FileFingerprint) o;
+        return size == other.size && lastModified == other.lastModified && checksum == other.checksum;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(size) * 31 + Long.hashCode(checksum);
+    }
+
+    @Override
+    public String toString() {
+        return "FileFingerprint[size=" + size + ", lastModified=" + lastModified + ", checksum=" + Long.toHexString(checksum) + "]";
+    }
+}
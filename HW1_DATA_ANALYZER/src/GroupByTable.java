@@ -0,0 +1,98 @@
+
+import java.util.Arrays;
+
+// Open-addressing group-by over int keys (dictionary codes, spicy levels, ids, ...) with
+// a primitive count and sum per group. Groups are numbered in first-seen order, and once
+// the table has grown to the number of distinct keys, add() allocates nothing.
+public class GroupByTable {
+    private static final int EMPTY = -1;
+
+    private int[] slots;        // group index per hash slot, or EMPTY
+    private int[] keys;         // key per group
+    private long[] counts;      // row count per group
+    private double[] sums;      // sum of values per group
+    private int groups;
+
+    public GroupByTable() {
+        this(16);
+    }
+
+    public GroupByTable(int expectedGroups) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedGroups) * 2 - 1) << 1;
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        keys = new int[capacity / 2];
+        counts = new long[capacity / 2];
+        sums = new double[capacity / 2];
+    }
+
+    // Returns the index of key's group, for callers that keep more per group.
+    public int add(int key, double value) {
+        int group = groupOf(key);
+        counts[group]++;
+        sums[group] += value;
+        return group;
+    }
+
+    // Folds other's groups into this one; groups new to this table keep other's order.
+    public GroupByTable combine(GroupByTable other) {
+        for (int group = 0; group < other.groups; group++) {
+            int target = groupOf(other.keys[group]);
+            counts[target] += other.counts[group];
+            sums[target] += other.sums[group];
+        }
+        return this;
+    }
+
+    public int size() { return groups; }
+    public int getKey(int group) { return keys[group]; }
+    public long getCount(int group) { return counts[group]; }
+    public double getSum(int group) { return sums[group]; }
+    public double getAverage(int group) { return sums[group] / counts[group]; }
+
+    // Returns the group index of key, creating the group if needed.
+    private int groupOf(int key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int group = slots[slot];
+            if (group == EMPTY) {
+                if (groups == keys.length) {
+                    grow();
+                    return groupOf(key);
+                }
+                group = groups++;
+                keys[group] = key;
+                slots[slot] = group;
+                return group;
+            }
+            if (keys[group] == key) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Keeps the load factor at most 1/2.
+    private void grow() {
+        int capacity = slots.length * 2;
+        keys = Arrays.copyOf(keys, capacity / 2);
+        counts = Arrays.copyOf(counts, capacity / 2);
+        sums = Arrays.copyOf(sums, capacity / 2);
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        int mask = capacity - 1;
+        for (int group = 0; group < groups; group++) {
+            int slot = hash(keys[group]) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = group;
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,155 @@
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+import java.util.zip.GZIPInputStream;
+
+// Reads a gzipped CSV (menu_items.csv.gz) without decompressing it to disk. The calling
+// thread inflates into a ring of reusable blocks, each cut at its last complete line, and
+// hands every full block to a pool of parser threads, so inflating the next block overlaps
+// with parsing the previous ones. Partial results are combined in file order.
+public class GzipCSVReader {
+    // Large enough that per-block overhead is negligible, small enough to keep the ring cheap
+    private static final int BLOCK_SIZE = 4 << 20;
+    private static final int INPUT_BUFFER = 1 << 16;
+
+    private final int threads;
+
+    public GzipCSVReader(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public static boolean isGzip(String filePath) {
+        return filePath.endsWith(".gz");
+    }
+
+    public List<MenuItem> readCSV(String filePath) {
+        BlockParser<List<MenuItem>> parser = (buf, from, to) -> {
+            List<MenuItem> partial = new ArrayList<>();
+            MappedCSVReader.parseLines(buf, from, to, MappedCSVReader.itemHandler(partial::add));
+            return partial;
+        };
+        List<MenuItem> items = read(filePath, parser, (a, b) -> {
+            a.addAll(b);
+            return a;
+        });
+        return items != null ? items : new ArrayList<>();
+    }
+
+    public MenuTable readTable(String filePath) {
+        return readTable(filePath, EnumSet.allOf(MenuColumns.Column.class));
+    }
+
+    // Loads only the given columns; see MappedCSVReader.tableHandler(ColumnAppender, Set).
+    public MenuTable readTable(String filePath, Set<MenuColumns.Column> columns) {
+        BlockParser<MenuTable> parser = (buf, from, to) -> {
+            MenuTable partial = new MenuTable();
+            MappedCSVReader.parseLines(buf, from, to, MappedCSVReader.tableHandler(partial, columns));
+            return partial;
+        };
+        MenuTable table = read(filePath, parser, MenuTable::append);
+        return table != null ? table : new MenuTable();
+    }
+
+    private <A> A read(String filePath, BlockParser<A> parser, BinaryOperator<A> combiner) {
+        // One block being filled, one queued and one being parsed per thread
+        BlockingQueue<Block> free = new ArrayBlockingQueue<>(threads + 2);
+        for (int i = 0; i < threads + 2; i++) {
+            free.add(new Block());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, PhaseProfile.threadFactory());
+        List<Future<A>> partials = new ArrayList<>();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(Paths.get(filePath)), INPUT_BUFFER)) {
+            Block block = free.take();
+            int carried = 0;
+            boolean header = true;
+            while (true) {
+                int length = fill(in, block.bytes, carried);
+                boolean last = length < BLOCK_SIZE;
+                int end = last ? length : MappedCSVReader.lastLineEnd(block.buf, length);
+                if (end == 0 && !last) {
+                    throw new IOException("Line longer than " + BLOCK_SIZE + " bytes in " + filePath);
+                }
+                int start = header ? MappedCSVReader.skipLine(block.buf, 0, end) : 0;
+                header = false;
+
+                // Carry the partial last line over to the next block before this one is handed off
+                Block next = last ? null : free.take();
+                if (next != null) {
+                    carried = length - end;
+                    System.arraycopy(block.bytes, end, next.bytes, 0, carried);
+                }
+                Block parsed = block;
+                partials.add(pool.submit(() -> {
+                    try {
+                        return parser.parse(parsed.buf, start, end);
+                    } finally {
+                        free.add(parsed);
+                    }
+                }));
+                if (last) {
+                    break;
+                }
+                block = next;
+            }
+
+            A result = null;
+            for (Future<A> partial : partials) {
+                result = result == null ? partial.get() : combiner.apply(result, partial.get());
+            }
+            return result;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            e.getCause().printStackTrace();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Reads until the block is full or the stream ends; returns the number of bytes in it.
+    private static int fill(InputStream in, byte[] bytes, int from) throws IOException {
+        int length = from;
+        while (length < bytes.length) {
+            int read = in.read(bytes, length, bytes.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private interface BlockParser<A> {
+        A parse(ByteBuffer buf, int from, int to);
+    }
+
+    private static final class Block {
+        final byte[] bytes = new byte[BLOCK_SIZE];
+        final ByteBuffer buf = ByteBuffer.wrap(bytes);
+    }
+}
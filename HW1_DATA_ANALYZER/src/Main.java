@@ -1,18 +1,567 @@
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public class Main {
+    // Largest --top; the items are printed one per line, so more is a job for --sort
+    private static final int MAX_TOP = 1_000_000;
+    // The reports printed for every dataset; only the columns they read are loaded
+    private static final List<DataAnalyzer.Report> REPORTS = List.of(
+        DataAnalyzer.Report.ITEMS_PER_CATEGORY,
+        DataAnalyzer.Report.AVERAGE_PRICE_PER_CATEGORY,
+        DataAnalyzer.Report.MOST_AND_LEAST_EXPENSIVE_ITEMS,
+        DataAnalyzer.Report.AVERAGE_PREPARATION_TIME,
+        DataAnalyzer.Report.AVAILABILITY_COUNTS,
+        DataAnalyzer.Report.HIGHEST_CALORIE_ITEM
+    );
+
+    private static final String USAGE = String.join("\n",
+        "Usage: Main [options] [input ...]",
+        "Inputs are CSV files (optionally gzipped), directories or globs of CSV shards, or column files",
+        "written by --export-columns; each is analyzed in turn. The default input is menu_items.csv.",
+        "  --threads N             parse on N threads",
+        "  --reports R,...         the reports to print instead of the defaults, e.g.",
+        "                          items-per-category,average-price-per-category; all prints every one",
+        "  --format text|json|csv  text lines (the default), one JSON object per input, or CSV rows",
+        "  --profile               print wall time, bytes/s, rows/s and allocated bytes per phase to stderr",
+        "  --query Q               run an ad-hoc query, e.g. 'avg(price) where vegetarian group by cuisineType'",
+        "  --top K                 the K most expensive items; with --by calories|preparation-time, --lowest",
+        "                          and --per category|cuisine for other columns, the least, or per group",
+        "  --sort [-]COLUMN PATH   write the rows sorted by a column, highest first with -",
+        "  --exact-medians         exact medians from an external sort",
+        "  --memory-mb N           memory budget of sorts and joins (default 64)",
+        "  --sales PATH            join a sales CSV to the menu",
+        "  --export-columns PATH   write the rows to a column file",
+        "  --percentiles           add the percentiles report",
+        "  --histograms            add the histograms and cross-tabs",
+        "  --bucket-width M=W,...  histogram bucket widths, e.g. price=0.5,calories=50,preparation-time=5;",
+        "                          by default each splits the range of values into about 20 buckets",
+        "  --per-shard             also print the reports of each shard",
+        "  --follow SECONDS        print updated reports whenever lines are appended",
+        "  --cache                 reuse the aggregates of an unchanged or appended-to CSV",
+        "  --snapshot              reuse a columnar snapshot of an unchanged CSV",
+        "  --off-heap              keep the columns outside the Java heap");
+
+    // What to analyze, from the command line
+    private static final class Options {
+        List<String> inputs = new ArrayList<>();
+        int threads = 1;
+        boolean useSnapshot;
+        int followSeconds;
+        boolean perShard;
+        boolean offHeap;
+        List<DataAnalyzer.Report> reports;
+        List<MenuQuery> queries = new ArrayList<>();
+        int top;
+        MenuStats.Metric topMetric = MenuStats.Metric.PRICE;
+        boolean topLowest;
+        // Histogram bucket widths per MenuStats.Metric ordinal; NaN derives one from the values
+        double[] bucketWidths = {Double.NaN, Double.NaN, Double.NaN};
+        TopK.GroupBy topGroupBy = TopK.GroupBy.NONE;
+        MenuStats.Metric sortMetric;
+        boolean sortDescending;
+        Path sortOutput;
+        boolean exactMedians;
+        long memoryBudget = 64L << 20;
+        boolean histograms;
+        boolean percentiles;
+        boolean useCache;
+        Path salesPath;
+        Path exportPath;
+        ReportWriter.Format format = ReportWriter.Format.TEXT;
+        boolean profile;
+    }
+
     public static void main(String[] args) {
-        String csvFilePath = "menu_items.csv"; // Update this path if necessary
+        Options options = parse(args);
+        if (options == null) {
+            return;
+        }
+        if (options.inputs.isEmpty()) {
+            options.inputs.add("menu_items.csv"); // Update this path if necessary
+        }
+        if (options.inputs.size() > 1
+                && (options.followSeconds > 0 || options.sortOutput != null || options.exportPath != null)) {
+            System.err.println("--follow, --sort and --export-columns take a single input");
+            return;
+        }
+        ReportWriter output = ReportWriter.of(options.format, System.out);
+
+        if (options.followSeconds > 0) {
+            List<DataAnalyzer.Report> reports = selectReports(options);
+            if (hasExtras(options) || reports.contains(DataAnalyzer.Report.HISTOGRAMS)
+                    || reports.contains(DataAnalyzer.Report.CROSS_TABS)) {
+                System.err.println("--follow keeps only the aggregates; queries, top items, sorting, exact medians, sales and histograms need the rows");
+                return;
+            }
+            follow(options.inputs.get(0), options.followSeconds, reports, output);
+            return;
+        }
+        for (String input : options.inputs) {
+            // Inputs after the first are told apart by a header line in the text format
+            String header = options.inputs.size() > 1 ? input : null;
+            PhaseProfile profile = options.profile ? new PhaseProfile() : null;
+            if (!analyze(input, header, options, output, profile)) {
+                return;
+            }
+            if (profile != null) {
+                profile.print(ReportWriter.of(options.format, System.err), input);
+            }
+        }
+    }
+
+    // null, after printing why, when the arguments are not valid
+    private static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                // A ForkJoinPool's parallelism is at most 32767
+                Long threads = parseNumber(args[i], args[++i], 1, 0x7fff);
+                if (threads == null) {
+                    return null;
+                }
+                options.threads = threads.intValue();
+            } else if (args[i].equals("--follow") && i + 1 < args.length) {
+                Long seconds = parseNumber(args[i], args[++i], 1, Integer.MAX_VALUE);
+                if (seconds == null) {
+                    return null;
+                }
+                options.followSeconds = seconds.intValue();
+            } else if (args[i].equals("--per-shard")) {
+                options.perShard = true;
+            } else if (args[i].equals("--reports") && i + 1 < args.length) {
+                options.reports = parseReports(args[++i]);
+                if (options.reports == null) {
+                    return null;
+                }
+            } else if (args[i].equals("--format") && i + 1 < args.length) {
+                try {
+                    options.format = ReportWriter.Format.valueOf(args[++i].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown format: " + args[i] + " (text, json or csv)");
+                    System.err.println(USAGE);
+                    return null;
+                }
+            } else if (args[i].equals("--profile")) {
+                options.profile = true;
+            } else if (args[i].equals("--query") && i + 1 < args.length) {
+                try {
+                    options.queries.add(MenuQuery.parse(args[++i]));
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    System.err.println(USAGE);
+                    return null;
+                }
+            } else if (args[i].equals("--top") && i + 1 < args.length) {
+                Long k = parseNumber(args[i], args[++i], 1, MAX_TOP);
+                if (k == null) {
+                    return null;
+                }
+                options.top = k.intValue();
+            } else if (args[i].equals("--by") && i + 1 < args.length) {
+                try {
+                    options.topMetric = MenuStats.Metric.valueOf(args[++i].toUpperCase().replace('-', '_'));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown --by column: " + args[i] + " (price, calories or preparation-time)");
+                    System.err.println(USAGE);
+                    return null;
+                }
+            } else if (args[i].equals("--per") && i + 1 < args.length) {
+                try {
+                    options.topGroupBy = TopK.GroupBy.valueOf(args[++i].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown --per group: " + args[i] + " (category or cuisine)");
+                    System.err.println(USAGE);
+                    return null;
+                }
+            } else if (args[i].equals("--lowest")) {
+                options.topLowest = true;
+            } else if (args[i].equals("--sort") && i + 2 < args.length) {
+                // --sort -price sorted.csv sorts from the highest price down
+                String metric = args[++i];
+                options.sortDescending = metric.startsWith("-");
+                try {
+                    options.sortMetric = MenuStats.Metric.valueOf(
+                        metric.substring(options.sortDescending ? 1 : 0).toUpperCase().replace('-', '_'));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown sort column: " + metric);
+                    System.err.println(USAGE);
+                    return null;
+                }
+                options.sortOutput = Paths.get(args[++i]);
+            } else if (args[i].equals("--sales") && i + 1 < args.length) {
+                options.salesPath = Paths.get(args[++i]);
+            } else if (args[i].equals("--export-columns") && i + 1 < args.length) {
+                options.exportPath = Paths.get(args[++i]);
+            } else if (args[i].equals("--exact-medians")) {
+                options.exactMedians = true;
+            } else if (args[i].equals("--memory-mb") && i + 1 < args.length) {
+                // Limited so the budget in bytes fits in a long
+                Long megabytes = parseNumber(args[i], args[++i], 1, Long.MAX_VALUE >> 20);
+                if (megabytes == null) {
+                    return null;
+                }
+                options.memoryBudget = megabytes << 20;
+            } else if (args[i].equals("--percentiles")) {
+                options.percentiles = true;
+            } else if (args[i].equals("--cache")) {
+                options.useCache = true;
+            } else if (args[i].equals("--histograms")) {
+                options.histograms = true;
+            } else if (args[i].equals("--bucket-width") && i + 1 < args.length) {
+                if (!parseBucketWidths(args[++i], options.bucketWidths)) {
+                    return null;
+                }
+            } else if (args[i].equals("--off-heap")) {
+                options.offHeap = true;
+            } else if (args[i].equals("--snapshot")) {
+                options.useSnapshot = true;
+            } else if (args[i].equals("--help")) {
+                System.out.println(USAGE);
+                return null;
+            } else if (args[i].startsWith("--")) {
+                // An unknown option, or one missing its value
+                System.err.println("Unknown or incomplete option: " + args[i]);
+                System.err.println(USAGE);
+                return null;
+            } else {
+                options.inputs.add(args[i]);
+            }
+        }
+        return options;
+    }
+
+    // The value of option as a whole number from min to max; null, after printing why, if it is not one
+    private static Long parseNumber(String option, String value, long min, long max) {
+        try {
+            long number = Long.parseLong(value);
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below with the range
+        }
+        System.err.println(option + " takes a whole number from " + min + " to " + max + ": " + value);
+        System.err.println(USAGE);
+        return null;
+    }
+
+    // price=0.5,calories=50 into widths, by metric; false, after printing why, if it is not valid
+    private static boolean parseBucketWidths(String text, double[] widths) {
+        for (String width : text.split(",")) {
+            int equals = width.indexOf('=');
+            try {
+                MenuStats.Metric metric = MenuStats.Metric.valueOf(
+                    width.substring(0, Math.max(0, equals)).trim().toUpperCase().replace('-', '_'));
+                double value = Double.parseDouble(width.substring(equals + 1).trim());
+                if (value > 0 && value < Double.POSITIVE_INFINITY) {
+                    widths[metric.ordinal()] = value;
+                    continue;
+                }
+            } catch (IllegalArgumentException e) {
+                // Reported below; NumberFormatException is one too
+            }
+            System.err.println("--bucket-width takes price, calories or preparation-time = a positive number: " + width);
+            System.err.println(USAGE);
+            return false;
+        }
+        return true;
+    }
+
+    // items-per-category,percentiles or all; null, after printing why, for an unknown name
+    private static List<DataAnalyzer.Report> parseReports(String names) {
+        if (names.equals("all")) {
+            return List.of(DataAnalyzer.Report.values());
+        }
+        List<DataAnalyzer.Report> reports = new ArrayList<>();
+        for (String name : names.split(",")) {
+            try {
+                reports.add(DataAnalyzer.Report.valueOf(name.trim().toUpperCase().replace('-', '_')));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown report: " + name);
+                for (DataAnalyzer.Report report : DataAnalyzer.Report.values()) {
+                    System.err.println("  " + report.name().toLowerCase().replace('_', '-'));
+                }
+                System.err.println(USAGE);
+                return null;
+            }
+        }
+        return reports;
+    }
+
+    // Whether anything besides reports was asked for
+    private static boolean hasExtras(Options options) {
+        return !options.queries.isEmpty() || options.top > 0 || options.sortOutput != null || options.exactMedians
+            || options.salesPath != null || options.exportPath != null;
+    }
+
+    // --reports, or the defaults, with --percentiles and --histograms added
+    private static List<DataAnalyzer.Report> selectReports(Options options) {
+        // Queries, top items, sorting, exact medians, sales and exports replace the default reports
+        List<DataAnalyzer.Report> reports = new ArrayList<>(
+            options.reports != null ? options.reports : hasExtras(options) ? List.of() : REPORTS);
+        if (options.percentiles && !reports.contains(DataAnalyzer.Report.PERCENTILES)) {
+            reports.add(DataAnalyzer.Report.PERCENTILES);
+        }
+        if (options.histograms) {
+            for (DataAnalyzer.Report report : List.of(DataAnalyzer.Report.HISTOGRAMS, DataAnalyzer.Report.CROSS_TABS)) {
+                if (!reports.contains(report)) {
+                    reports.add(report);
+                }
+            }
+        }
+        return reports;
+    }
+
+    // Reads input and prints its reports, timing each phase in profile if it is not null;
+    // false, after printing why, if the options cannot apply to it.
+    private static boolean analyze(String input, String header, Options options, ReportWriter output,
+            PhaseProfile profile) {
+        boolean extras = hasExtras(options);
+        List<DataAnalyzer.Report> reports = selectReports(options);
+        boolean percentiles = reports.contains(DataAnalyzer.Report.PERCENTILES);
+        boolean histograms = reports.contains(DataAnalyzer.Report.HISTOGRAMS)
+            || reports.contains(DataAnalyzer.Report.CROSS_TABS);
+        Set<MenuColumns.Column> columns = DataAnalyzer.columnsFor(reports);
+        options.queries.forEach(query -> columns.addAll(query.columns()));
+        if (options.top > 0) {
+            columns.addAll(DataAnalyzer.topItemsColumns(options.topMetric, options.topGroupBy));
+        }
+        if (options.exactMedians) {
+            columns.addAll(EnumSet.of(MenuColumns.Column.PRICE, MenuColumns.Column.CALORIES,
+                MenuColumns.Column.PREPARATION_TIME));
+        }
+        if (options.sortOutput != null || options.exportPath != null) {
+            columns.addAll(EnumSet.allOf(MenuColumns.Column.class));
+        }
+        if (options.salesPath != null) {
+            columns.addAll(EnumSet.of(MenuColumns.Column.ITEM_ID, MenuColumns.Column.PRICE, MenuColumns.Column.CALORIES,
+                MenuColumns.Column.CATEGORY_NAME, MenuColumns.Column.CUISINE_TYPE));
+        }
+        boolean needsRows = extras || histograms;
+        boolean queriesOnly = reports.isEmpty() && options.top == 0 && options.sortOutput == null && !options.exactMedians
+            && options.salesPath == null && options.exportPath == null;
+        if (profile != null) {
+            // The readers read and parse in one pass, so the two are timed together
+            profile.begin("read and parse");
+        }
+
+        DataAnalyzer dataAnalyzer;
+        if (queriesOnly && MenuColumnFile.isColumnFile(Paths.get(input))) {
+            // Each query reads only the row groups its filter can match
+            MenuColumnFile columnFile;
+            try {
+                columnFile = MenuColumnFile.open(Paths.get(input));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            if (profile != null) {
+                // Opening reads the footer only, so there is no throughput to report
+                profile.begin("output");
+            }
+            output.begin(input, header);
+            options.queries.forEach(query -> DataAnalyzer.printQuery(columnFile, query, output));
+            output.end();
+            return true;
+        } else if (ShardedCSVReader.isSharded(input)) {
+            if (needsRows || percentiles) {
+                System.err.println("Queries, top items, sorting, exact medians, sales, histograms and percentiles need the rows and cannot run on merged shard summaries");
+                return false;
+            }
+            // A directory or glob of per-restaurant CSVs, analyzed concurrently and merged
+            Map<Path, MenuSummary> summaries = summarizeShards(input,
+                options.threads > 1 ? options.threads : Runtime.getRuntime().availableProcessors());
+            if (summaries == null) {
+                return false;
+            }
+            if (profile != null) {
+                profile.count(inputBytes(input), summaries.values().stream().mapToLong(MenuSummary::getItemCount).sum());
+                // Each shard is aggregated as it is parsed; this is the merge
+                profile.begin("aggregate");
+            }
+            dataAnalyzer = new DataAnalyzer(ShardedCSVReader.merge(summaries.values()));
+            if (profile != null) {
+                profile.begin("output");
+            }
+            if (options.perShard) {
+                for (Map.Entry<Path, MenuSummary> shard : summaries.entrySet()) {
+                    DataAnalyzer shardAnalyzer = new DataAnalyzer(shard.getValue());
+                    shardAnalyzer.setOutput(output);
+                    output.begin(shard.getKey().toString(), shard.getKey() + ": " + shard.getValue().getItemCount() + " items");
+                    printReports(shardAnalyzer, reports);
+                    output.end();
+                }
+                header = summaries.size() + " shards combined";
+            }
+        } else if (options.useCache) {
+            if (needsRows) {
+                System.err.println("--cache keeps only the aggregates; queries, top items, sorting, exact medians, sales and histograms need the rows");
+                return false;
+            }
+            // Reuses menu_items.csv.summary, or folds the appended lines into it
+            MenuSummary summary = new CSVReader().readSummary(input, percentiles);
+            dataAnalyzer = new DataAnalyzer(summary);
+            if (profile != null) {
+                // Only appended lines are read, if any, so no throughput either
+                profile.begin("output");
+            }
+        } else {
+            MenuColumns table = readTable(input, columns, options.threads, options.offHeap, options.useSnapshot);
+            if (profile != null) {
+                // Bytes per second only when the CSV itself was parsed
+                boolean parsed = !options.useSnapshot && !MenuColumnFile.isColumnFile(Paths.get(input));
+                profile.count(parsed ? inputBytes(input) : -1, table.size());
+                profile.begin("aggregate");
+                profile.count(-1, table.size());
+            }
+            // The percentile sketches and histograms are filled in the same scan as every other report
+            double[] widths = histograms ? MenuHistograms.widths(table, options.bucketWidths) : null;
+            ParallelCSVReader.RangeAggregator<MenuStats> stats = (from, to) -> MenuStats.of(table, from, to,
+                percentiles, histograms ? new MenuHistograms(table, widths[0], widths[1], widths[2]) : null);
+            // With more threads, each range of rows is aggregated on its own and the results combined
+            dataAnalyzer = new DataAnalyzer(options.threads > 1
+                ? new ParallelCSVReader(options.threads).aggregate(table.size(), stats, MenuStats::combine)
+                : stats.aggregate(0, table.size()));
+            if (profile != null) {
+                // Queries, sorts and joins run as their results are printed, so they count as output
+                profile.begin("output");
+            }
+        }
+
+        dataAnalyzer.setOutput(output);
+        output.begin(input, header);
+        printReports(dataAnalyzer, reports);
+        options.queries.forEach(dataAnalyzer::printQuery);
+        if (options.top > 0) {
+            printTopItems(dataAnalyzer, options);
+        }
+        ExternalSorter sorter = new ExternalSorter(options.memoryBudget);
+        if (options.exactMedians) {
+            dataAnalyzer.printExactMedians(sorter);
+        }
+        if (options.sortOutput != null) {
+            dataAnalyzer.writeSorted(sorter, options.sortMetric, options.sortDescending, options.sortOutput);
+        }
+        if (options.salesPath != null) {
+            dataAnalyzer.printSales(new SalesJoin(options.memoryBudget), options.salesPath);
+        }
+        if (options.exportPath != null) {
+            dataAnalyzer.writeColumnFile(options.exportPath);
+        }
+        output.end();
+        return true;
+    }
+
+    private static void printTopItems(DataAnalyzer dataAnalyzer, Options options) {
+        boolean highest = !options.topLowest;
+        if (options.threads == 1) {
+            dataAnalyzer.printTopItems(options.top, options.topMetric, highest, options.topGroupBy);
+            return;
+        }
+        // Each range of rows fills its own bounded heaps; the partial heaps are merged in row order
+        MenuColumns table = dataAnalyzer.getStats().getTable();
+        dataAnalyzer.printTopItems(new ParallelCSVReader(options.threads).aggregate(table.size(),
+            (from, to) -> TopK.of(table, options.top, options.topMetric, highest, options.topGroupBy, from, to),
+            TopK::combine));
+    }
+
+    private static MenuColumns readTable(String csvFilePath, Set<MenuColumns.Column> columns, int threads,
+            boolean offHeap, boolean useSnapshot) {
+        if (MenuColumnFile.isColumnFile(Paths.get(csvFilePath))) {
+            // A file written by --export-columns: decode just the columns, from every row group
+            try {
+                return MenuColumnFile.open(Paths.get(csvFilePath)).readTable(columns);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return new MenuTable();
+            }
+        } else if (offHeap) {
+            // Columns outside the Java heap, mapped from the snapshot when it is used
+            return useSnapshot
+                ? new CSVReader().mapTable(csvFilePath)
+                : new MappedCSVReader().readOffHeapTable(csvFilePath, columns);
+        } else if (useSnapshot) {
+            // Reuses menu_items.csv.snapshot when it was written from the same CSV
+            CSVReader csvReader = new CSVReader();
+            return csvReader.readTable(csvFilePath);
+        } else if (threads > 1 && GzipCSVReader.isGzip(csvFilePath)) {
+            // Compressed input cannot be split by offset; inflate on one thread, parse on the others
+            GzipCSVReader gzipReader = new GzipCSVReader(threads - 1);
+            return gzipReader.readTable(csvFilePath, columns);
+        } else if (threads > 1) {
+            ParallelCSVReader parallelReader = new ParallelCSVReader(threads);
+            return parallelReader.readTable(csvFilePath, columns);
+        } else {
+            CSVReader csvReader = new CSVReader();
+            return csvReader.readColumns(csvFilePath, columns);
+        }
+    }
+
+    private static Map<Path, MenuSummary> summarizeShards(String shardPath, int threads) {
+        List<Path> shards;
+        try {
+            shards = ShardedCSVReader.findShards(shardPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return new ShardedCSVReader(threads).summarizeShards(shards);
+    }
+
+    // The size of the input on disk, summed over the shards of a directory or glob
+    private static long inputBytes(String input) {
+        try {
+            if (ShardedCSVReader.isSharded(input)) {
+                long bytes = 0;
+                for (Path shard : ShardedCSVReader.findShards(input)) {
+                    bytes += Files.size(shard);
+                }
+                return bytes;
+            }
+            return Files.size(Paths.get(input));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
 
-        // Read the CSV file
-        CSVReader csvReader = new CSVReader();
-        DataAnalyzer dataAnalyzer = new DataAnalyzer(csvReader.readCSV(csvFilePath));
+    // Re-reads only the lines appended to the file and prints the reports, updated, every
+    // interval in which new rows arrived, until the process is stopped.
+    private static void follow(String csvFilePath, int intervalSeconds, List<DataAnalyzer.Report> reports,
+            ReportWriter output) {
+        CSVFollower follower = new CSVFollower(csvFilePath, reports.contains(DataAnalyzer.Report.PERCENTILES));
+        while (true) {
+            try {
+                int added = follower.poll();
+                if (added > 0) {
+                    DataAnalyzer dataAnalyzer = new DataAnalyzer(follower.getSummary());
+                    dataAnalyzer.setOutput(output);
+                    output.begin(csvFilePath, added + " new items, " + follower.getSummary().getItemCount() + " total");
+                    printReports(dataAnalyzer, reports);
+                    output.end();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            try {
+                Thread.sleep(intervalSeconds * 1000L);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
 
+    private static void printReports(DataAnalyzer dataAnalyzer, List<DataAnalyzer.Report> reports) {
         // Perform analyses
-        dataAnalyzer.printItemsPerCategory();
-        dataAnalyzer.printAveragePricePerCategory();
-        dataAnalyzer.printMostAndLeastExpensiveItems();
-        dataAnalyzer.printAveragePreparationTime();
-        dataAnalyzer.printAvailabilityCounts();
-        dataAnalyzer.printHighestCalorieItem();
+        for (DataAnalyzer.Report report : reports) {
+            dataAnalyzer.print(report);
+        }
     }
 }
@@ -0,0 +1,291 @@
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Reads the same files as CSVReader, but memory-maps them and parses numbers straight
+// from the mapped bytes. No line Strings or split arrays are created; item names are
+// decoded per row, and the repeated string columns go through a StringDictionary so each
+// distinct value is decoded once.
+public class MappedCSVReader {
+    static final int FIELD_COUNT = 12;
+    // Bytes tokenized per CsvTokenizer call; their offsets stay in L1/L2 until the rows use them
+    private static final int TOKENIZE_CHUNK = 1 << 14;
+    // A single MappedByteBuffer cannot address more than Integer.MAX_VALUE bytes
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    private final long maxWindow;
+
+    public MappedCSVReader() {
+        this(MAX_WINDOW);
+    }
+
+    MappedCSVReader(long maxWindow) {
+        this.maxWindow = maxWindow;
+    }
+
+    public List<MenuItem> readCSV(String filePath) {
+        List<MenuItem> menuItems = new ArrayList<>();
+        readCSV(filePath, menuItems::add);
+        return menuItems;
+    }
+
+    public void readCSV(String filePath, Consumer<MenuItem> sink) {
+        read(filePath, itemHandler(sink));
+    }
+
+    // Loads straight into columns, without creating a MenuItem per row.
+    public MenuTable readTable(String filePath) {
+        MenuTable table = new MenuTable();
+        read(filePath, tableHandler(table));
+        return table;
+    }
+
+    // Loads only the given columns; see tableHandler(ColumnAppender, Set).
+    public MenuTable readTable(String filePath, Set<MenuColumns.Column> columns) {
+        MenuTable table = new MenuTable();
+        read(filePath, tableHandler(table, columns));
+        return table;
+    }
+
+    // Loads only the lines in bytes [from, to) of the file, e.g. the ones appended since it
+    // was from bytes long. from must be 0 (the header is then skipped) or the start of a line.
+    public MenuTable readTable(String filePath, long from, long to, Set<MenuColumns.Column> columns) {
+        MenuTable table = new MenuTable();
+        read(filePath, from, to, tableHandler(table, columns));
+        return table;
+    }
+
+    // Loads into columns outside the Java heap; see OffHeapMenuTable.
+    public OffHeapMenuTable readOffHeapTable(String filePath) {
+        return readOffHeapTable(filePath, EnumSet.allOf(MenuColumns.Column.class));
+    }
+
+    public OffHeapMenuTable readOffHeapTable(String filePath, Set<MenuColumns.Column> columns) {
+        OffHeapMenuTable table = new OffHeapMenuTable();
+        read(filePath, tableHandler(table, columns));
+        return table;
+    }
+
+    private void read(String filePath, RowHandler handler) {
+        read(filePath, 0, Long.MAX_VALUE, handler);
+    }
+
+    private void read(String filePath, long from, long to, RowHandler handler) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = Math.min(to, channel.size());
+            long position = from;
+            boolean header = from == 0;
+
+            while (position < size) {
+                long length = Math.min(maxWindow, size - position);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                if (position + length < size) {
+                    // Stop the window at its last complete line; the rest is mapped again next round
+                    end = lastLineEnd(buf, end);
+                    if (end == 0) {
+                        throw new IOException("Line longer than " + maxWindow + " bytes at offset " + position);
+                    }
+                }
+                int start = 0;
+                if (header) {
+                    start = skipLine(buf, 0, end);
+                    header = false;
+                }
+                parseLines(buf, start, end, handler);
+                position += end;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Receives one line at a time. fieldEnds[i] is the offset of the ',' (or line end)
+    // after field i; field 0 starts at lineStart and field i + 1 at fieldEnds[i] + 1.
+    interface RowHandler {
+        void row(ByteBuffer buf, int lineStart, int[] fieldEnds);
+    }
+
+    // Parses every line in [from, to) of buf. from must be at the start of a line.
+    static void parseLines(ByteBuffer buf, int from, int to, RowHandler handler) {
+        CsvTokenizer tokenizer = CsvTokenizer.get();
+        if (tokenizer.isVectorized()) {
+            parseTokenizedLines(buf, from, to, tokenizer, handler);
+            return;
+        }
+        int[] fieldEnds = new int[FIELD_COUNT];
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            int field = 0;
+            while (lineEnd < to) {
+                byte b = buf.get(lineEnd);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == ',' && field < FIELD_COUNT - 1) {
+                    fieldEnds[field++] = lineEnd;
+                }
+                lineEnd++;
+            }
+            endLine(buf, lineStart, lineEnd, field, fieldEnds, handler);
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    // Same lines, but the structural bytes are found a chunk at a time by the tokenizer, so
+    // this loop only visits the delimiters rather than every byte.
+    private static void parseTokenizedLines(ByteBuffer buf, int from, int to, CsvTokenizer tokenizer,
+            RowHandler handler) {
+        int[] offsets = new int[Math.max(0, Math.min(TOKENIZE_CHUNK, to - from))];
+        int[] fieldEnds = new int[FIELD_COUNT];
+        int lineStart = from;
+        int field = 0;
+        for (int chunk = from; chunk < to; ) {
+            int chunkEnd = chunk + Math.min(offsets.length, to - chunk);
+            int count = tokenizer.tokenize(buf, chunk, chunkEnd, offsets);
+            for (int i = 0; i < count; i++) {
+                int offset = offsets[i];
+                if (offset >= 0) {
+                    // Commas past the last field's start belong to it
+                    if (field < FIELD_COUNT - 1) {
+                        fieldEnds[field++] = offset;
+                    }
+                } else {
+                    endLine(buf, lineStart, ~offset, field, fieldEnds, handler);
+                    lineStart = ~offset + 1;
+                    field = 0;
+                }
+            }
+            chunk = chunkEnd;
+        }
+        if (lineStart < to) {
+            endLine(buf, lineStart, to, field, fieldEnds, handler);
+        }
+    }
+
+    private static void endLine(ByteBuffer buf, int lineStart, int lineEnd, int field, int[] fieldEnds,
+            RowHandler handler) {
+        if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        if (lineEnd > lineStart) {
+            if (field != FIELD_COUNT - 1) {
+                throw new IllegalArgumentException("Expected " + FIELD_COUNT + " fields in line: "
+                    + CsvBytes.toString(buf, lineStart, lineEnd));
+            }
+            fieldEnds[FIELD_COUNT - 1] = lineEnd;
+            handler.row(buf, lineStart, fieldEnds);
+        }
+    }
+
+    static RowHandler itemHandler(Consumer<MenuItem> sink) {
+        StringDictionary cuisineTypes = new StringDictionary();
+        StringDictionary categoryNames = new StringDictionary();
+        StringDictionary descriptions = new StringDictionary();
+        return (buf, lineStart, fieldEnds) -> sink.accept(new MenuItem(
+            CsvBytes.parseInt(buf, lineStart, fieldEnds[0]),
+            CsvBytes.toString(buf, fieldEnds[0] + 1, fieldEnds[1]),
+            CsvBytes.parseInt(buf, fieldEnds[1] + 1, fieldEnds[2]),
+            CsvBytes.parseDouble(buf, fieldEnds[2] + 1, fieldEnds[3]),
+            CsvBytes.parseInt(buf, fieldEnds[3] + 1, fieldEnds[4]),
+            CsvBytes.parseInt(buf, fieldEnds[4] + 1, fieldEnds[5]),
+            cuisineTypes.decode(cuisineTypes.encode(buf, fieldEnds[5] + 1, fieldEnds[6])),
+            CsvBytes.parseBoolean(buf, fieldEnds[6] + 1, fieldEnds[7]),
+            CsvBytes.parseInt(buf, fieldEnds[7] + 1, fieldEnds[8]),
+            CsvBytes.parseBoolean(buf, fieldEnds[8] + 1, fieldEnds[9]),
+            categoryNames.decode(categoryNames.encode(buf, fieldEnds[9] + 1, fieldEnds[10])),
+            descriptions.decode(descriptions.encode(buf, fieldEnds[10] + 1, fieldEnds[11]))
+        ));
+    }
+
+    static RowHandler tableHandler(ColumnAppender table) {
+        StringDictionary cuisineTypes = table.cuisineTypes();
+        StringDictionary categoryNames = table.categoryNames();
+        StringDictionary descriptions = table.descriptions();
+        return (buf, lineStart, fieldEnds) -> table.add(
+            CsvBytes.parseInt(buf, lineStart, fieldEnds[0]),
+            CsvBytes.toString(buf, fieldEnds[0] + 1, fieldEnds[1]),
+            CsvBytes.parseInt(buf, fieldEnds[1] + 1, fieldEnds[2]),
+            CsvBytes.parseDouble(buf, fieldEnds[2] + 1, fieldEnds[3]),
+            CsvBytes.parseInt(buf, fieldEnds[3] + 1, fieldEnds[4]),
+            CsvBytes.parseInt(buf, fieldEnds[4] + 1, fieldEnds[5]),
+            cuisineTypes.encode(buf, fieldEnds[5] + 1, fieldEnds[6]),
+            CsvBytes.parseBoolean(buf, fieldEnds[6] + 1, fieldEnds[7]),
+            CsvBytes.parseInt(buf, fieldEnds[7] + 1, fieldEnds[8]),
+            CsvBytes.parseBoolean(buf, fieldEnds[8] + 1, fieldEnds[9]),
+            categoryNames.encode(buf, fieldEnds[9] + 1, fieldEnds[10]),
+            descriptions.encode(buf, fieldEnds[10] + 1, fieldEnds[11])
+        );
+    }
+
+    // Like tableHandler(table), but only decodes the given columns. The others are still
+    // delimited, since the line has to be split anyway, but never parsed, hashed or copied:
+    // they load as 0, false, "" for item names, or the code of "" for dictionary columns.
+    static RowHandler tableHandler(ColumnAppender table, Set<MenuColumns.Column> columns) {
+        if (columns.size() == MenuColumns.Column.values().length) {
+            return tableHandler(table);
+        }
+        boolean itemID = columns.contains(MenuColumns.Column.ITEM_ID);
+        boolean itemName = columns.contains(MenuColumns.Column.ITEM_NAME);
+        boolean categoryID = columns.contains(MenuColumns.Column.CATEGORY_ID);
+        boolean price = columns.contains(MenuColumns.Column.PRICE);
+        boolean calories = columns.contains(MenuColumns.Column.CALORIES);
+        boolean preparationTime = columns.contains(MenuColumns.Column.PREPARATION_TIME);
+        boolean cuisineType = columns.contains(MenuColumns.Column.CUISINE_TYPE);
+        boolean vegetarian = columns.contains(MenuColumns.Column.VEGETARIAN);
+        boolean spicyLevel = columns.contains(MenuColumns.Column.SPICY_LEVEL);
+        boolean available = columns.contains(MenuColumns.Column.AVAILABLE);
+        boolean categoryName = columns.contains(MenuColumns.Column.CATEGORY_NAME);
+        boolean description = columns.contains(MenuColumns.Column.DESCRIPTION);
+        StringDictionary cuisineTypes = table.cuisineTypes();
+        StringDictionary categoryNames = table.categoryNames();
+        StringDictionary descriptions = table.descriptions();
+        int noCuisineType = cuisineType ? -1 : cuisineTypes.encode("");
+        int noCategoryName = categoryName ? -1 : categoryNames.encode("");
+        int noDescription = description ? -1 : descriptions.encode("");
+        return (buf, lineStart, fieldEnds) -> table.add(
+            itemID ? CsvBytes.parseInt(buf, lineStart, fieldEnds[0]) : 0,
+            itemName ? CsvBytes.toString(buf, fieldEnds[0] + 1, fieldEnds[1]) : "",
+            categoryID ? CsvBytes.parseInt(buf, fieldEnds[1] + 1, fieldEnds[2]) : 0,
+            price ? CsvBytes.parseDouble(buf, fieldEnds[2] + 1, fieldEnds[3]) : 0,
+            calories ? CsvBytes.parseInt(buf, fieldEnds[3] + 1, fieldEnds[4]) : 0,
+            preparationTime ? CsvBytes.parseInt(buf, fieldEnds[4] + 1, fieldEnds[5]) : 0,
+            cuisineType ? cuisineTypes.encode(buf, fieldEnds[5] + 1, fieldEnds[6]) : noCuisineType,
+            vegetarian && CsvBytes.parseBoolean(buf, fieldEnds[6] + 1, fieldEnds[7]),
+            spicyLevel ? CsvBytes.parseInt(buf, fieldEnds[7] + 1, fieldEnds[8]) : 0,
+            available && CsvBytes.parseBoolean(buf, fieldEnds[8] + 1, fieldEnds[9]),
+            categoryName ? categoryNames.encode(buf, fieldEnds[9] + 1, fieldEnds[10]) : noCategoryName,
+            description ? descriptions.encode(buf, fieldEnds[10] + 1, fieldEnds[11]) : noDescription
+        );
+    }
+
+    // Returns the offset just past the first '\n' at or after from, or to if there is none.
+    static int skipLine(ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+    // Returns the offset just past the last '\n' before to, or 0 if there is none.
+    static int lastLineEnd(ByteBuffer buf, int to) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (buf.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,41 @@
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Writes menu rows in the layout of menu_items.csv, so the output can be read back by any
+// of the readers.
+public class MenuCSVWriter {
+    static final String HEADER = "ItemID,ItemName,CategoryID,Price,Calories,PreparationTime,CuisineType,Vegetarian,"
+        + "SpicyLevel,Availability,CategoryName,Description";
+
+    private MenuCSVWriter() {
+    }
+
+    // Writes the rows of table in the order of rows; returns the number of rows written.
+    public static long write(MenuColumns table, ExternalSorter.SortedRows rows, Path path) throws IOException {
+        long written = 0;
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), 1 << 16)) {
+            out.write(HEADER);
+            out.write('\n');
+            StringBuilder line = new StringBuilder();
+            while (rows.next()) {
+                int row = rows.row();
+                line.setLength(0);
+                line.append(table.getItemID(row)).append(',').append(table.getItemName(row)).append(',')
+                    .append(table.getCategoryID(row)).append(',').append(table.getPrice(row)).append(',')
+                    .append(table.getCalories(row)).append(',').append(table.getPreparationTime(row)).append(',')
+                    .append(table.getCuisineType(row)).append(',').append(table.isVegetarian(row) ? "True" : "False")
+                    .append(',').append(table.getSpicyLevel(row)).append(',')
+                    .append(table.isAvailable(row) ? "True" : "False").append(',')
+                    .append(table.getCategoryName(row)).append(',').append(table.getDescription(row)).append('\n');
+                out.append(line);
+                written++;
+            }
+        }
+        return written;
+    }
+}
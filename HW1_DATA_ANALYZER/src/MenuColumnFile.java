@@ -0,0 +1,491 @@
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+// A menu table on disk in row groups of a fixed number of rows, each column of a group
+// stored as its own chunk. The footer keeps a zone map per chunk (min and max value, true
+// count for the booleans), so a filtered read skips every group whose zone maps rule the
+// filter out and, within the others, reads only the chunks of the columns it uses.
+//
+// Layout (little-endian):
+//   header    magic "MENUCOLS", int version
+//   groups    per group, a chunk per column in Column order:
+//               int columns and dictionary codes  int per row
+//               price                             double per row
+//               vegetarian, available             long bitset words of the group's rows
+//               itemName                          (int length, UTF-8 bytes) per row
+//   footer    int rows, int rowsPerGroup, int groups, dictionaries as in MenuSnapshot, then per
+//             chunk: long offset, int length, int CRC32C, double min, double max, long true count
+//   trailer   long footer offset, long CRC32C of the footer, magic
+//
+// The table has no nulls to count: the parsers reject empty numbers, and empty strings are
+// values like any other. Item names have no zone map (min and max are NaN).
+public final class MenuColumnFile {
+    private static final long MAGIC = 0x534C4F43554E454DL; // "MENUCOLS" in little-endian byte order
+    static final int VERSION = 1;
+    public static final int DEFAULT_ROWS_PER_GROUP = 1 << 16;
+    private static final int COLUMNS = MenuColumns.Column.values().length;
+    private static final int TRAILER_BYTES = 8 + 8 + 8;
+
+    private final Path path;
+    private final int rows;
+    private final int rowsPerGroup;
+    private final int groups;
+    private final StringDictionary cuisineTypes;
+    private final StringDictionary categoryNames;
+    private final StringDictionary descriptions;
+    // Per chunk, indexed by group * COLUMNS + column ordinal
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] checksums;
+    private final double[] mins;
+    private final double[] maxs;
+    private final long[] trueCounts;
+
+    private MenuColumnFile(Path path, ByteBuffer footer) {
+        this.path = path;
+        this.rows = footer.getInt();
+        this.rowsPerGroup = footer.getInt();
+        this.groups = footer.getInt();
+        this.cuisineTypes = getDictionary(footer);
+        this.categoryNames = getDictionary(footer);
+        this.descriptions = getDictionary(footer);
+        int chunks = groups * COLUMNS;
+        this.offsets = new long[chunks];
+        this.lengths = new int[chunks];
+        this.checksums = new int[chunks];
+        this.mins = new double[chunks];
+        this.maxs = new double[chunks];
+        this.trueCounts = new long[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            offsets[chunk] = footer.getLong();
+            lengths[chunk] = footer.getInt();
+            checksums[chunk] = footer.getInt();
+            mins[chunk] = footer.getDouble();
+            maxs[chunk] = footer.getDouble();
+            trueCounts[chunk] = footer.getLong();
+        }
+    }
+
+    public static void write(MenuColumns table, Path filePath) throws IOException {
+        write(table, filePath, DEFAULT_ROWS_PER_GROUP);
+    }
+
+    // rowsPerGroup must be a multiple of 64, so each group's bitsets start on a word boundary.
+    public static void write(MenuColumns table, Path filePath, int rowsPerGroup) throws IOException {
+        if (rowsPerGroup <= 0 || rowsPerGroup % 64 != 0) {
+            throw new IllegalArgumentException("rowsPerGroup must be a positive multiple of 64: " + rowsPerGroup);
+        }
+        int rows = table.size();
+        int groups = (rows + rowsPerGroup - 1) / rowsPerGroup;
+        ByteBuffer footer = ByteBuffer.allocate(12 + dictionaryBytes(table) + groups * COLUMNS * 40)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        footer.putInt(rows).putInt(rowsPerGroup).putInt(groups);
+        putDictionary(footer, table.cuisineTypes());
+        putDictionary(footer, table.categoryNames());
+        putDictionary(footer, table.descriptions());
+
+        Path tmp = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, header);
+            for (int from = 0; from < rows; from += rowsPerGroup) {
+                int to = Math.min(rows, from + rowsPerGroup);
+                for (MenuColumns.Column column : MenuColumns.Column.values()) {
+                    ByteBuffer chunk = encode(table, column, from, to);
+                    CRC32C crc = new CRC32C();
+                    crc.update(chunk.duplicate());
+                    footer.putLong(channel.position()).putInt(chunk.remaining()).putInt((int) crc.getValue());
+                    putZoneMap(footer, table, column, from, to);
+                    writeFully(channel, chunk);
+                }
+            }
+
+            long footerOffset = channel.position();
+            footer.flip();
+            CRC32C crc = new CRC32C();
+            crc.update(footer.duplicate());
+            writeFully(channel, footer);
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putLong(footerOffset).putLong(crc.getValue()).putLong(MAGIC).flip();
+            writeFully(channel, trailer);
+        }
+        Files.move(tmp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Whether the file starts like a column file, i.e. open() should be used instead of a
+    // CSV reader. A truncated or damaged one still counts, so open() can say what is wrong.
+    public static boolean isColumnFile(Path filePath) {
+        if (!Files.isRegularFile(filePath)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            return channel.size() >= 8 && readFully(channel, 0, 8).getLong() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Reads the footer; the chunks are read as the columns are needed.
+    public static MenuColumnFile open(Path filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 12 + TRAILER_BYTES) {
+                throw new IOException("Not a menu column file: " + filePath);
+            }
+            ByteBuffer header = readFully(channel, 0, 12);
+            ByteBuffer trailer = readFully(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+            long footerOffset = trailer.getLong();
+            long footerChecksum = trailer.getLong();
+            if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " menu column file: " + filePath);
+            }
+            if (trailer.getLong() != MAGIC || footerOffset < 12 || footerOffset > size - TRAILER_BYTES) {
+                throw new IOException("Menu column file is truncated: " + filePath);
+            }
+            ByteBuffer footer = readFully(channel, footerOffset, (int) (size - TRAILER_BYTES - footerOffset));
+            CRC32C crc = new CRC32C();
+            crc.update(footer.duplicate());
+            if (crc.getValue() != footerChecksum) {
+                throw new IOException("Menu column file footer checksum mismatch: " + filePath);
+            }
+            return new MenuColumnFile(filePath, footer);
+        }
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    public int getRowGroupCount() {
+        return groups;
+    }
+
+    // The zone maps of one row group, for QueryCondition.canMatch().
+    public final class RowGroup {
+        private final int group;
+
+        RowGroup(int group) {
+            this.group = group;
+        }
+
+        public int getRows() {
+            return Math.min(rowsPerGroup, rows - group * rowsPerGroup);
+        }
+
+        // Dictionary codes for the coded string columns, 0 and 1 for the booleans
+        public double getMin(MenuColumns.Column column) {
+            return mins[group * COLUMNS + column.ordinal()];
+        }
+
+        public double getMax(MenuColumns.Column column) {
+            return maxs[group * COLUMNS + column.ordinal()];
+        }
+
+        public long getTrueCount(MenuColumns.Column column) {
+            return trueCounts[group * COLUMNS + column.ordinal()];
+        }
+
+        // The code of value in column's dictionary, or -1 if no row holds it
+        int find(MenuColumns.Column column, String value) {
+            switch (column) {
+                case CUISINE_TYPE: return cuisineTypes.find(value);
+                case CATEGORY_NAME: return categoryNames.find(value);
+                case DESCRIPTION: return descriptions.find(value);
+                default: throw new IllegalArgumentException(MenuQuery.name(column) + " is not dictionary coded");
+            }
+        }
+    }
+
+    // The groups whose zone maps do not rule out where; every group if where is null.
+    public List<Integer> matchingGroups(QueryCondition where) {
+        List<Integer> matching = new ArrayList<>();
+        for (int group = 0; group < groups; group++) {
+            if (where == null || where.canMatch(new RowGroup(group))) {
+                matching.add(group);
+            }
+        }
+        return matching;
+    }
+
+    // Bytes of the chunks readTable(columns, where) reads, against the size of all chunks.
+    public long chunkBytes(Set<MenuColumns.Column> columns, QueryCondition where) {
+        long bytes = 0;
+        for (int group : matchingGroups(where)) {
+            for (MenuColumns.Column column : columns) {
+                bytes += lengths[group * COLUMNS + column.ordinal()];
+            }
+        }
+        return bytes;
+    }
+
+    public long chunkBytes() {
+        return Arrays.stream(lengths).asLongStream().sum();
+    }
+
+    public MenuTable readTable(Set<MenuColumns.Column> columns) throws IOException {
+        return readTable(columns, null);
+    }
+
+    // Loads the rows of the groups where can match, in file order, decoding only columns.
+    // The other columns load as in MappedCSVReader.tableHandler(table, columns). The rows
+    // of the groups that are read are not filtered further: run where on the table for that.
+    public MenuTable readTable(Set<MenuColumns.Column> columns, QueryCondition where) throws IOException {
+        List<Integer> matching = matchingGroups(where);
+        int size = 0;
+        for (int group : matching) {
+            size += new RowGroup(group).getRows();
+        }
+        int[] itemID = new int[size];
+        String[] itemName = new String[size];
+        int[] categoryID = new int[size];
+        double[] price = new double[size];
+        int[] calories = new int[size];
+        int[] preparationTime = new int[size];
+        int[] cuisineType = new int[size];
+        long[] vegetarian = new long[(size + 63) >>> 6];
+        int[] spicyLevel = new int[size];
+        long[] available = new long[(size + 63) >>> 6];
+        int[] categoryName = new int[size];
+        int[] description = new int[size];
+        List<String> cuisineTypeValues = values(cuisineTypes);
+        List<String> categoryNameValues = values(categoryNames);
+        List<String> descriptionValues = values(descriptions);
+        Arrays.fill(itemName, "");
+        fillMissing(columns, MenuColumns.Column.CUISINE_TYPE, cuisineType, cuisineTypeValues);
+        fillMissing(columns, MenuColumns.Column.CATEGORY_NAME, categoryName, categoryNameValues);
+        fillMissing(columns, MenuColumns.Column.DESCRIPTION, description, descriptionValues);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int base = 0;
+            for (int group : matching) {
+                int count = new RowGroup(group).getRows();
+                for (MenuColumns.Column column : columns) {
+                    ByteBuffer chunk = readChunk(channel, group, column);
+                    switch (column) {
+                        case ITEM_ID: chunk.asIntBuffer().get(itemID, base, count); break;
+                        case CATEGORY_ID: chunk.asIntBuffer().get(categoryID, base, count); break;
+                        case CALORIES: chunk.asIntBuffer().get(calories, base, count); break;
+                        case PREPARATION_TIME: chunk.asIntBuffer().get(preparationTime, base, count); break;
+                        case SPICY_LEVEL: chunk.asIntBuffer().get(spicyLevel, base, count); break;
+                        case CUISINE_TYPE: chunk.asIntBuffer().get(cuisineType, base, count); break;
+                        case CATEGORY_NAME: chunk.asIntBuffer().get(categoryName, base, count); break;
+                        case DESCRIPTION: chunk.asIntBuffer().get(description, base, count); break;
+                        case PRICE: chunk.asDoubleBuffer().get(price, base, count); break;
+                        // Every group but the last is whole words long, so base is word aligned
+                        case VEGETARIAN: chunk.asLongBuffer().get(vegetarian, base >>> 6, (count + 63) >>> 6); break;
+                        case AVAILABLE: chunk.asLongBuffer().get(available, base >>> 6, (count + 63) >>> 6); break;
+                        default:
+                            for (int row = base; row < base + count; row++) {
+                                byte[] bytes = new byte[chunk.getInt()];
+                                chunk.get(bytes);
+                                itemName[row] = new String(bytes, StandardCharsets.UTF_8);
+                            }
+                            break;
+                    }
+                }
+                base += count;
+            }
+        }
+        return new MenuTable(size, itemID, itemName, categoryID, price, calories, preparationTime, cuisineType,
+            vegetarian, spicyLevel, available, categoryName, description,
+            cuisineTypeValues, categoryNameValues, descriptionValues);
+    }
+
+    // Answers query from the groups its filter can match, loading only the columns it reads.
+    public MenuQuery.Result run(MenuQuery query) throws IOException {
+        return query.run(readTable(query.columns(), query.where()));
+    }
+
+    private ByteBuffer readChunk(FileChannel channel, int group, MenuColumns.Column column) throws IOException {
+        int chunk = group * COLUMNS + column.ordinal();
+        ByteBuffer bytes = readFully(channel, offsets[chunk], lengths[chunk]);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        if ((int) crc.getValue() != checksums[chunk]) {
+            throw new IOException("Menu column file checksum mismatch in row group " + group + ", column "
+                + MenuQuery.name(column) + ": " + path);
+        }
+        return bytes;
+    }
+
+    private static ByteBuffer encode(MenuColumns table, MenuColumns.Column column, int from, int to) {
+        int count = to - from;
+        ByteBuffer chunk;
+        switch (column) {
+            case ITEM_NAME: {
+                byte[][] names = new byte[count][];
+                int length = 0;
+                for (int row = from; row < to; row++) {
+                    names[row - from] = table.getItemName(row).getBytes(StandardCharsets.UTF_8);
+                    length += 4 + names[row - from].length;
+                }
+                chunk = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+                for (byte[] name : names) {
+                    chunk.putInt(name.length).put(name);
+                }
+                break;
+            }
+            case PRICE:
+                chunk = ByteBuffer.allocate(count * 8).order(ByteOrder.LITTLE_ENDIAN);
+                for (int row = from; row < to; row++) {
+                    chunk.putDouble(table.getPrice(row));
+                }
+                break;
+            case VEGETARIAN:
+            case AVAILABLE: {
+                chunk = ByteBuffer.allocate(((count + 63) >>> 6) * 8).order(ByteOrder.LITTLE_ENDIAN);
+                boolean vegetarian = column == MenuColumns.Column.VEGETARIAN;
+                for (int start = from; start < to; start += 64) {
+                    long word = 0;
+                    for (int row = start; row < Math.min(to, start + 64); row++) {
+                        boolean set = vegetarian ? table.isVegetarian(row) : table.isAvailable(row);
+                        word |= (set ? 1L : 0L) << (row - start);
+                    }
+                    chunk.putLong(word);
+                }
+                break;
+            }
+            default:
+                chunk = ByteBuffer.allocate(count * 4).order(ByteOrder.LITTLE_ENDIAN);
+                for (int row = from; row < to; row++) {
+                    chunk.putInt(intValue(table, column, row));
+                }
+                break;
+        }
+        return chunk.flip();
+    }
+
+    // min, max and true count of column over rows [from, to)
+    private static void putZoneMap(ByteBuffer footer, MenuColumns table, MenuColumns.Column column, int from, int to) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        long trueCount = 0;
+        switch (column) {
+            case ITEM_NAME:
+                min = Double.NaN;
+                max = Double.NaN;
+                break;
+            case PRICE:
+                for (int row = from; row < to; row++) {
+                    // Math.min/max keep a NaN, which QueryCondition reads as "no zone map"
+                    min = Math.min(min, table.getPrice(row));
+                    max = Math.max(max, table.getPrice(row));
+                }
+                break;
+            case VEGETARIAN:
+            case AVAILABLE:
+                for (int row = from; row < to; row++) {
+                    trueCount += (column == MenuColumns.Column.VEGETARIAN ? table.isVegetarian(row)
+                        : table.isAvailable(row)) ? 1 : 0;
+                }
+                min = trueCount == to - from ? 1 : 0;
+                max = trueCount > 0 ? 1 : 0;
+                break;
+            default:
+                for (int row = from; row < to; row++) {
+                    int value = intValue(table, column, row);
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                break;
+        }
+        footer.putDouble(min).putDouble(max).putLong(trueCount);
+    }
+
+    // The stored int of an int or dictionary-coded column
+    private static int intValue(MenuColumns table, MenuColumns.Column column, int row) {
+        switch (column) {
+            case ITEM_ID: return table.getItemID(row);
+            case CATEGORY_ID: return table.getCategoryID(row);
+            case CALORIES: return table.getCalories(row);
+            case PREPARATION_TIME: return table.getPreparationTime(row);
+            case SPICY_LEVEL: return table.getSpicyLevel(row);
+            case CUISINE_TYPE: return table.cuisineTypes().find(table.getCuisineType(row));
+            case CATEGORY_NAME: return table.categoryNames().find(table.getCategoryName(row));
+            case DESCRIPTION: return table.descriptions().find(table.getDescription(row));
+            default: throw new IllegalArgumentException(MenuQuery.name(column) + " is not an int column");
+        }
+    }
+
+    // A column that is not loaded holds the code of "", added to the dictionary if needed
+    private static void fillMissing(Set<MenuColumns.Column> columns, MenuColumns.Column column, int[] codes,
+            List<String> values) {
+        if (!columns.contains(column)) {
+            int code = values.indexOf("");
+            if (code < 0) {
+                code = values.size();
+                values.add("");
+            }
+            Arrays.fill(codes, code);
+        }
+    }
+
+    private static List<String> values(StringDictionary dictionary) {
+        List<String> values = new ArrayList<>(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            values.add(dictionary.decode(code));
+        }
+        return values;
+    }
+
+    private static int dictionaryBytes(MenuColumns table) {
+        int bytes = 0;
+        for (StringDictionary dictionary : List.of(table.cuisineTypes(), table.categoryNames(), table.descriptions())) {
+            bytes += 4;
+            for (int code = 0; code < dictionary.size(); code++) {
+                bytes += 4 + dictionary.decode(code).getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return bytes;
+    }
+
+    private static void putDictionary(ByteBuffer out, StringDictionary dictionary) {
+        out.putInt(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            byte[] bytes = dictionary.decode(code).getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static StringDictionary getDictionary(ByteBuffer in) {
+        StringDictionary dictionary = new StringDictionary();
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            dictionary.encode(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return dictionary;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Menu column file is truncated");
+            }
+        }
+        return buf.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+}
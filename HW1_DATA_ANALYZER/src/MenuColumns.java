@@ -0,0 +1,37 @@
+
+// Read access to the columns of a menu table, whether they are Java arrays (MenuTable) or
+// memory outside the heap (OffHeapMenuTable). MenuStats, TopK and DataAnalyzer only use
+// this interface: single rows through the getters, whole scans through copyTo() a block
+// of rows at a time (see ColumnBlock).
+public interface MenuColumns {
+    // The CSV columns, in file order
+    enum Column {
+        ITEM_ID, ITEM_NAME, CATEGORY_ID, PRICE, CALORIES, PREPARATION_TIME, CUISINE_TYPE, VEGETARIAN,
+        SPICY_LEVEL, AVAILABLE, CATEGORY_NAME, DESCRIPTION
+    }
+
+    int size();
+
+    MenuItem getItem(int row);
+    int getItemID(int row);
+    String getItemName(int row);
+    int getCategoryID(int row);
+    double getPrice(int row);
+    int getCalories(int row);
+    int getPreparationTime(int row);
+    String getCuisineType(int row);
+    boolean isVegetarian(int row);
+    int getSpicyLevel(int row);
+    boolean isAvailable(int row);
+    String getCategoryName(int row);
+    String getDescription(int row);
+
+    // Dictionaries of the coded string columns
+    StringDictionary cuisineTypes();
+    StringDictionary categoryNames();
+    StringDictionary descriptions();
+
+    // Copies the scanned columns of rows [from, to) into block, starting at index 0.
+    // to - from is at most ColumnBlock.ROWS.
+    void copyTo(int from, int to, ColumnBlock block);
+}
@@ -0,0 +1,319 @@
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+// Writes a seeded, reproducible menu dataset of any size. Rows are generated and written
+// one at a time, so memory use does not depend on the row count.
+// See USAGE, or run it with --help, for the options.
+public class MenuDataGenerator {
+    public enum Format { HW1, OPENCSV, SQL, SALES }
+
+    private static final String USAGE = String.join("\n",
+        "Usage: java MenuDataGenerator [options]",
+        "  --rows N                 number of items (default 50)",
+        "  --seed N                 random seed (default 42); same seed and options, same output",
+        "  --format hw1|opencsv|sql|sales",
+        "                           column order of HW1 menu_items.csv, OpenCSV header order of the",
+        "                           REST modules, INSERT batches for MENU_ITEM_ENTITY, or sales lines",
+        "                           (SaleID,ItemID,Quantity) for SalesJoin (default hw1)",
+        "  --batch N                rows per INSERT statement for --format sql (default 1000)",
+        "  --categories N           distinct categories (default 4)",
+        "  --cuisines N             distinct cuisine types (default 5)",
+        "  --skew S                 Zipf exponent for picking categories, cuisines and sold items,",
+        "                           0 = uniform (default 0)",
+        "  --items N                for --format sales: item ids sold are 1..N (default 50)",
+        "  --quantity MIN:MAX[:DIST] for --format sales: units per line (default 1:5:uniform)",
+        "  --price MIN:MAX[:DIST]   price range in dollars (default 4.00:15.00:uniform)",
+        "  --calories MIN:MAX[:DIST]           (default 100:700:uniform)",
+        "  --preparation-time MIN:MAX[:DIST]   (default 5:30:uniform)",
+        "  --spicy-level MIN:MAX[:DIST]        (default 0:5:uniform)",
+        "                           DIST is uniform, or normal centered in the range with the",
+        "                           range covering +-3 standard deviations (clamped)",
+        "  --vegetarian P           probability that an item is vegetarian (default 0.5)",
+        "  --available P            probability that an item is available (default 0.5)",
+        "  --out PATH               output file (default standard output)");
+
+    private static final String[] CATEGORY_NAMES = {"Main Course", "Appetizer", "Dessert", "Beverage"};
+    private static final String[] CUISINE_NAMES = {"Chinese", "Indian", "Italian", "Japanese", "Mexican", "American"};
+
+    private long rows = 50;
+    private long seed = 42;
+    private Format format = Format.HW1;
+    private int batchSize = 1000;
+    private int categoryCount = 4;
+    private int cuisineCount = 5;
+    private double skew = 0;
+    private Range priceCents = new Range(400, 1500, false);
+    private Range calories = new Range(100, 700, false);
+    private Range preparationTime = new Range(5, 30, false);
+    private Range spicyLevel = new Range(0, 5, false);
+    private double vegetarianProbability = 0.5;
+    private double availableProbability = 0.5;
+    private int itemCount = 50;
+    private Range quantity = new Range(1, 5, false);
+
+    public static void main(String[] args) throws IOException {
+        MenuDataGenerator generator = new MenuDataGenerator();
+        String outPath = null;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help") || option.equals("-h")) {
+                System.out.println(USAGE);
+                return;
+            }
+            if (i + 1 >= args.length) {
+                usageError("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--rows": generator.rows = Long.parseLong(value); break;
+                    case "--seed": generator.seed = Long.parseLong(value); break;
+                    case "--format": generator.format = Format.valueOf(value.toUpperCase()); break;
+                    case "--batch": generator.batchSize = Integer.parseInt(value); break;
+                    case "--categories": generator.categoryCount = Integer.parseInt(value); break;
+                    case "--cuisines": generator.cuisineCount = Integer.parseInt(value); break;
+                    case "--skew": generator.skew = Double.parseDouble(value); break;
+                    case "--price": generator.priceCents = Range.parse(value, 100); break;
+                    case "--calories": generator.calories = Range.parse(value, 1); break;
+                    case "--preparation-time": generator.preparationTime = Range.parse(value, 1); break;
+                    case "--spicy-level": generator.spicyLevel = Range.parse(value, 1); break;
+                    case "--vegetarian": generator.vegetarianProbability = Double.parseDouble(value); break;
+                    case "--available": generator.availableProbability = Double.parseDouble(value); break;
+                    case "--items": generator.itemCount = Integer.parseInt(value); break;
+                    case "--quantity": generator.quantity = Range.parse(value, 1); break;
+                    case "--out": outPath = value; break;
+                    default: usageError("Unknown option: " + option);
+                }
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException too
+                usageError("Invalid value for " + option + ": " + value + " (" + e.getMessage() + ")");
+            }
+        }
+
+        Writer out = outPath == null
+            ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+            : Files.newBufferedWriter(Paths.get(outPath), StandardCharsets.UTF_8);
+        try (Writer writer = new BufferedWriter(out, 1 << 16)) {
+            generator.write(writer);
+        } catch (IllegalArgumentException e) {
+            // Options that are only invalid together, checked before anything is written
+            usageError(e.getMessage());
+        }
+    }
+
+    private static void usageError(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    public void write(Writer out) throws IOException {
+        if (categoryCount < 1 || cuisineCount < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("--categories, --cuisines and --batch must be at least 1");
+        }
+        if (format == Format.SALES) {
+            writeSales(out);
+            return;
+        }
+        Random random = new Random(seed);
+        String[] categories = names(CATEGORY_NAMES, "Category_", categoryCount);
+        String[] cuisines = names(CUISINE_NAMES, "Cuisine_", cuisineCount);
+        double[] categoryWeights = zipfCumulative(categoryCount, skew);
+        double[] cuisineWeights = zipfCumulative(cuisineCount, skew);
+
+        writePreamble(out, categories);
+        StringBuilder line = new StringBuilder(256);
+        for (long id = 1; id <= rows; id++) {
+            // Draw every value in a fixed order so the output only depends on seed and options
+            int category = pick(categoryWeights, random);
+            int cuisine = pick(cuisineWeights, random);
+            long price = priceCents.next(random);
+            long itemCalories = calories.next(random);
+            long prepTime = preparationTime.next(random);
+            long spicy = spicyLevel.next(random);
+            boolean vegetarian = random.nextDouble() < vegetarianProbability;
+            boolean available = random.nextDouble() < availableProbability;
+
+            line.setLength(0);
+            switch (format) {
+                case HW1:
+                    line.append(id).append(",Item_").append(id).append(',').append(category + 1).append(',');
+                    appendCents(line, price);
+                    line.append(',').append(itemCalories).append(',').append(prepTime).append(',')
+                        .append(cuisines[cuisine]).append(',').append(vegetarian ? "True" : "False").append(',')
+                        .append(spicy).append(',').append(available ? "True" : "False").append(',')
+                        .append(categories[category]).append(",Description of ").append(categories[category])
+                        .append('\n');
+                    break;
+                case OPENCSV:
+                    line.append(available).append(',').append(itemCalories).append(',').append(category + 1)
+                        .append(',').append(categories[category]).append(',').append(cuisines[cuisine])
+                        .append(",Description of ").append(categories[category]).append(',').append(id)
+                        .append(",Item_").append(id).append(',').append(prepTime).append(',');
+                    appendCents(line, price);
+                    line.append(',').append(spicy).append(',').append(vegetarian).append('\n');
+                    break;
+                case SQL:
+                    boolean first = (id - 1) % batchSize == 0;
+                    if (first) {
+                        line.append("INSERT INTO MENU_ITEM_ENTITY (ITEM_NAME, CATEGORY_ID, PRICE, CALORIES, ")
+                            .append("PREPARATION_TIME, CUISINE_TYPE, VEGETARIAN, SPICY_LEVEL, AVAILABILITY, ")
+                            .append("CATEGORY_NAME, DESCRIPTION) VALUES\n");
+                    }
+                    line.append("('Item_").append(id).append("', ").append(category + 1).append(", ");
+                    appendCents(line, price);
+                    line.append(", ").append(itemCalories).append(", ").append(prepTime).append(", ");
+                    appendSqlString(line, cuisines[cuisine]).append(", ").append(vegetarian).append(", ")
+                        .append(spicy).append(", ").append(available).append(", ");
+                    appendSqlString(line, categories[category]).append(", ");
+                    appendSqlString(line, "Description of " + categories[category]);
+                    boolean last = id % batchSize == 0 || id == rows;
+                    line.append(last ? ");\n" : "),\n");
+                    break;
+            }
+            out.append(line);
+        }
+        if (format == Format.SQL) {
+            out.write("COMMIT;\n");
+        }
+    }
+
+    // Sales lines of items 1..itemCount, the first items most popular when skewed
+    private void writeSales(Writer out) throws IOException {
+        if (itemCount < 1) {
+            throw new IllegalArgumentException("--items must be at least 1");
+        }
+        Random random = new Random(seed);
+        double[] itemWeights = zipfCumulative(itemCount, skew);
+        out.write("SaleID,ItemID,Quantity\n");
+        StringBuilder line = new StringBuilder(32);
+        for (long id = 1; id <= rows; id++) {
+            int item = pick(itemWeights, random);
+            line.setLength(0);
+            line.append(id).append(',').append(item + 1).append(',').append(quantity.next(random)).append('\n');
+            out.append(line);
+        }
+    }
+
+    private void writePreamble(Writer out, String[] categories) throws IOException {
+        switch (format) {
+            case HW1:
+                out.write("ItemID,ItemName,CategoryID,Price,Calories,PreparationTime,CuisineType,Vegetarian,"
+                    + "SpicyLevel,Availability,CategoryName,Description\n");
+                break;
+            case OPENCSV:
+                out.write("availability,calories,categoryId,categoryName,cuisineType,description,itemId,"
+                    + "itemName,preparationTime,price,spicyLevel,vegetarian\n");
+                break;
+            case SALES:
+                break;
+            case SQL:
+                // Matches the schema in the JPA modules' data.sql; category ids are explicit so
+                // the CATEGORY_ID foreign keys below line up
+                StringBuilder sql = new StringBuilder("BEGIN;\n\nINSERT INTO CATEGORY_ENTITY (CATEGORY_ID, CATEGORY_NAME) VALUES\n");
+                for (int i = 0; i < categories.length; i++) {
+                    sql.append('(').append(i + 1).append(", ");
+                    appendSqlString(sql, categories[i]).append(i + 1 < categories.length ? "),\n" : ");\n\n");
+                }
+                out.write(sql.toString());
+                break;
+        }
+    }
+
+    private static String[] names(String[] known, String prefix, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = i < known.length ? known[i] : prefix + (i + 1);
+        }
+        return names;
+    }
+
+    // Cumulative Zipf weights: value i is picked with probability proportional to 1 / (i + 1)^skew.
+    private static double[] zipfCumulative(int count, double skew) {
+        double[] cumulative = new double[count];
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            total += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < count; i++) {
+            cumulative[i] /= total;
+        }
+        return cumulative;
+    }
+
+    private static int pick(double[] cumulative, Random random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] <= u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void appendCents(StringBuilder line, long cents) {
+        if (cents < 0) {
+            line.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        line.append(cents / 100).append('.').append(fraction < 10 ? "0" : "").append(fraction);
+    }
+
+    private static StringBuilder appendSqlString(StringBuilder sql, String value) {
+        return sql.append('\'').append(value.replace("'", "''")).append('\'');
+    }
+
+    // Inclusive integer range, drawn uniformly or from a clamped normal distribution.
+    private static final class Range {
+        private final long min;
+        private final long max;
+        private final boolean normal;
+
+        Range(long min, long max, boolean normal) {
+            if (min > max) {
+                throw new IllegalArgumentException("Empty range " + min + ":" + max);
+            }
+            this.min = min;
+            this.max = max;
+            this.normal = normal;
+        }
+
+        // Parses MIN:MAX[:uniform|normal]; scale converts the bounds to integer units (e.g. cents).
+        static Range parse(String spec, int scale) {
+            String[] parts = spec.split(":");
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("Expected MIN:MAX[:uniform|normal], got " + spec);
+            }
+            boolean normal = parts.length == 3 && parts[2].equalsIgnoreCase("normal");
+            if (parts.length == 3 && !normal && !parts[2].equalsIgnoreCase("uniform")) {
+                throw new IllegalArgumentException("Unknown distribution " + parts[2]);
+            }
+            return new Range(Math.round(Double.parseDouble(parts[0]) * scale),
+                Math.round(Double.parseDouble(parts[1]) * scale), normal);
+        }
+
+        long next(Random random) {
+            if (normal) {
+                double mean = (min + max) / 2.0;
+                double deviation = (max - min) / 6.0;
+                long value = Math.round(mean + random.nextGaussian() * deviation);
+                return Math.max(min, Math.min(max, value));
+            }
+            return min + (long) (random.nextDouble() * (max - min + 1));
+        }
+    }
+}
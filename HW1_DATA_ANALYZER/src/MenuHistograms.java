@@ -0,0 +1,241 @@
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+// Fixed-width histograms of price, calories and preparation time, and dense cross-tabs of
+// cuisine by spicy level and category by vegetarian. Every counter is a slot in a flat
+// long[] indexed by bucket, dictionary code or level, so counting a row is a few array
+// increments; MenuStats.withHistograms() does it in the same loop as its other metrics.
+public final class MenuHistograms {
+    // Buckets per metric that widths() aims for when no width is given
+    private static final int DEFAULT_BUCKETS = 20;
+    // Values past the last bucket are counted in it
+    private static final int MAX_BUCKETS = 1 << 16;
+    // Spicy levels of the cross-tab; lower and higher levels are counted in one column each
+    private static final int MAX_SPICY_LEVEL = 10;
+
+    private final MenuColumns table;
+    private final double[] widths;
+    // Counts per bucket, indexed by Metric ordinal; bucket i holds [i * width, (i + 1) * width)
+    private final long[][] buckets = new long[MenuStats.Metric.values().length][];
+    // Counts of negative and NaN values per metric, which fall in no bucket
+    private final long[] underflow = new long[MenuStats.Metric.values().length];
+    private final CrossTab cuisineBySpicyLevel;
+    private final CrossTab categoryByVegetarian;
+
+    MenuHistograms(MenuColumns table, double priceWidth, double caloriesWidth, double preparationTimeWidth) {
+        this.table = table;
+        this.widths = new double[] {priceWidth, caloriesWidth, preparationTimeWidth};
+        for (int metric = 0; metric < widths.length; metric++) {
+            if (!(widths[metric] > 0)) {
+                throw new IllegalArgumentException("bucket width must be positive: " + widths[metric]);
+            }
+            buckets[metric] = new long[16];
+        }
+        this.cuisineBySpicyLevel = new CrossTab(table.cuisineTypes().size(), MAX_SPICY_LEVEL + 3);
+        this.categoryByVegetarian = new CrossTab(table.categoryNames().size(), 2);
+    }
+
+    void add(ColumnBlock block, int row) {
+        count(0, block.price[row]);
+        count(1, block.calories[row]);
+        count(2, block.preparationTime[row]);
+        cuisineBySpicyLevel.add(block.cuisineType[row], spicyLevelColumn(block.spicyLevel[row]));
+        categoryByVegetarian.add(block.categoryName[row], (int) ((block.vegetarian[row >>> 6] >>> row) & 1L));
+    }
+
+    // Column 0 for levels below 0, then 0 to MAX_SPICY_LEVEL, then one for the levels above
+    private static int spicyLevelColumn(int level) {
+        return level < 0 ? 0 : level > MAX_SPICY_LEVEL ? MAX_SPICY_LEVEL + 2 : level + 1;
+    }
+
+    private static String spicyLevelName(int column) {
+        return column == 0 ? "<0" : column == MAX_SPICY_LEVEL + 2 ? ">" + MAX_SPICY_LEVEL : Integer.toString(column - 1);
+    }
+
+    private void count(int metric, double value) {
+        if (!(value >= 0)) {
+            underflow[metric]++;
+            return;
+        }
+        int bucket = (int) Math.min(MAX_BUCKETS - 1, value / widths[metric]);
+        long[] counts = buckets[metric];
+        if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.min(MAX_BUCKETS, Math.max(bucket + 1, counts.length * 2)));
+            buckets[metric] = counts;
+        }
+        counts[bucket]++;
+    }
+
+    // Adds other's counts; both must have the same bucket widths.
+    MenuHistograms combine(MenuHistograms other) {
+        if (!Arrays.equals(widths, other.widths)) {
+            throw new IllegalArgumentException("Cannot combine histograms with different bucket widths");
+        }
+        for (int metric = 0; metric < buckets.length; metric++) {
+            long[] counts = buckets[metric];
+            long[] otherCounts = other.buckets[metric];
+            if (otherCounts.length > counts.length) {
+                counts = Arrays.copyOf(counts, otherCounts.length);
+                buckets[metric] = counts;
+            }
+            for (int bucket = 0; bucket < otherCounts.length; bucket++) {
+                counts[bucket] += otherCounts[bucket];
+            }
+            underflow[metric] += other.underflow[metric];
+        }
+        cuisineBySpicyLevel.combine(other.cuisineBySpicyLevel);
+        categoryByVegetarian.combine(other.categoryByVegetarian);
+        return this;
+    }
+
+    public double getBucketWidth(MenuStats.Metric metric) {
+        return widths[metric.ordinal()];
+    }
+
+    // Item count per non-empty bucket, keyed and ordered by the bucket's lower bound; negative
+    // and NaN values are counted under -Infinity.
+    public Map<Double, Long> getHistogram(MenuStats.Metric metric) {
+        Map<Double, Long> histogram = new TreeMap<>();
+        long[] counts = buckets[metric.ordinal()];
+        double width = widths[metric.ordinal()];
+        if (underflow[metric.ordinal()] > 0) {
+            histogram.put(Double.NEGATIVE_INFINITY, underflow[metric.ordinal()]);
+        }
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            if (counts[bucket] > 0) {
+                // Bounds of fractional widths to nine decimals: 0.6, not 3 * 0.2 = 0.6000000000000001
+                double lower = width < 1 ? Math.rint(bucket * width * 1e9) / 1e9 : bucket * width;
+                histogram.put(lower, counts[bucket]);
+            }
+        }
+        return histogram;
+    }
+
+    // Bucket widths of price, calories and preparation time: each of widths that is a number,
+    // and for the others (or all, if widths is null) one that splits the table's range of values
+    // into about DEFAULT_BUCKETS buckets, rounded up to 1, 2 or 5 times a power of ten. Prices
+    // from 4.00 to 15.00 get width 1.0, prices up to 1000 width 50.0.
+    static double[] widths(MenuColumns table, double[] widths) {
+        double[] result = widths != null ? widths.clone() : new double[] {Double.NaN, Double.NaN, Double.NaN};
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = {0, 0, 0};
+        boolean derive = false;
+        for (double width : result) {
+            derive |= Double.isNaN(width);
+        }
+        if (derive) {
+            ColumnBlock.forEach(table, 0, table.size(), block -> {
+                for (int row = block.from; row < block.to; row++) {
+                    range(min, max, 0, block.price[row]);
+                    range(min, max, 1, block.calories[row]);
+                    range(min, max, 2, block.preparationTime[row]);
+                }
+            });
+        }
+        for (int metric = 0; metric < result.length; metric++) {
+            if (Double.isNaN(result[metric])) {
+                result[metric] = roundedWidth(min[metric] <= max[metric] ? (max[metric] - min[metric]) / DEFAULT_BUCKETS : 0);
+            }
+        }
+        return result;
+    }
+
+    // Negative and NaN values are left out, as they fall in no bucket
+    private static void range(double[] min, double[] max, int metric, double value) {
+        if (value >= 0) {
+            min[metric] = Math.min(min[metric], value);
+            max[metric] = Math.max(max[metric], value);
+        }
+    }
+
+    // The smallest of 1, 2 or 5 times a power of ten that is at least width; 1 for an empty
+    // range, so a single repeated value gets one bucket
+    private static double roundedWidth(double width) {
+        if (!(width > 0)) {
+            return 1;
+        }
+        double power = Math.pow(10, Math.floor(Math.log10(width)));
+        for (double step : new double[] {1, 2, 5}) {
+            if (step * power >= width) {
+                return step * power;
+            }
+        }
+        return 10 * power;
+    }
+
+    // Item count per cuisine and spicy level, including zero counts for every spicy level
+    // seen with some other cuisine. Levels are "0" to "10", with "<0" and ">10" for the rest.
+    public Map<String, Map<String, Long>> getItemCountPerCuisineAndSpicyLevel() {
+        return cuisineBySpicyLevel.toMap(table.cuisineTypes()::decode, MenuHistograms::spicyLevelName);
+    }
+
+    public Map<String, Map<Boolean, Long>> getItemCountPerCategoryAndVegetarian() {
+        return categoryByVegetarian.toMap(table.categoryNames()::decode, vegetarian -> vegetarian == 1);
+    }
+
+    // Counts per (row key, column) pair in one row-major long[]: a fixed number of columns,
+    // and rows for non-negative int keys, grown as larger keys arrive.
+    private static final class CrossTab {
+        private long[] counts;
+        private int rows;
+        private final int columns;
+
+        CrossTab(int rows, int columns) {
+            this.rows = Math.max(1, rows);
+            this.columns = columns;
+            this.counts = new long[this.rows * columns];
+        }
+
+        void add(int row, int column) {
+            if (row >= rows) {
+                grow(row + 1);
+            }
+            counts[row * columns + column]++;
+        }
+
+        void combine(CrossTab other) {
+            if (other.rows > rows) {
+                grow(other.rows);
+            }
+            for (int i = 0; i < other.rows * columns; i++) {
+                counts[i] += other.counts[i];
+            }
+        }
+
+        private void grow(int newRows) {
+            // Double the row count so adding codes one at a time stays cheap
+            rows = Math.max(newRows, rows * 2);
+            counts = Arrays.copyOf(counts, Math.multiplyExact(rows, columns));
+        }
+
+        // Rows and columns with no items at all are left out
+        <R, C> Map<R, Map<C, Long>> toMap(IntFunction<R> rowKey, IntFunction<C> columnKey) {
+            long[] columnTotals = new long[columns];
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    columnTotals[column] += counts[row * columns + column];
+                }
+            }
+            Map<R, Map<C, Long>> crossTab = new HashMap<>();
+            for (int row = 0; row < rows; row++) {
+                Map<C, Long> cells = new LinkedHashMap<>();
+                long rowTotal = 0;
+                for (int column = 0; column < columns; column++) {
+                    if (columnTotals[column] > 0) {
+                        cells.put(columnKey.apply(column), counts[row * columns + column]);
+                        rowTotal += counts[row * columns + column];
+                    }
+                }
+                if (rowTotal > 0) {
+                    crossTab.put(rowKey.apply(row), cells);
+                }
+            }
+            return crossTab;
+        }
+    }
+}
@@ -0,0 +1,530 @@
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// An ad-hoc aggregate over a menu table, with an optional filter, grouping, order and limit:
+//
+//   avg(calories) where available and vegetarian and spicyLevel >= 3 group by cuisineType
+//       order by value desc limit 5
+//
+// Aggregates are count, sum, avg, min and max; columns are named like the MenuItem
+// fields. run() compiles the query against the table into lambdas over ColumnBlock
+// arrays (see QueryCondition) and answers it in one scan, so nothing is interpreted per row.
+public final class MenuQuery {
+    public enum Aggregate { COUNT, SUM, AVG, MIN, MAX }
+
+    // NONE keeps groups in first-seen order
+    public enum Order { NONE, KEY, VALUE, COUNT }
+
+    private final Aggregate aggregate;
+    private final MenuColumns.Column column;
+    private final QueryCondition where;
+    private final MenuColumns.Column groupBy;
+    private final Order order;
+    private final boolean descending;
+    private final int limit;
+
+    // column is ignored for COUNT; where and groupBy may be null; limit applies after ordering.
+    public MenuQuery(Aggregate aggregate, MenuColumns.Column column, QueryCondition where, MenuColumns.Column groupBy,
+                     Order order, boolean descending, int limit) {
+        if (aggregate != Aggregate.COUNT && (column == null || isText(column))) {
+            throw new IllegalArgumentException(aggregate.name().toLowerCase(Locale.ROOT) + " needs a numeric column");
+        }
+        if (groupBy == MenuColumns.Column.PRICE || groupBy == MenuColumns.Column.ITEM_NAME) {
+            throw new IllegalArgumentException("Cannot group by " + name(groupBy));
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        this.aggregate = aggregate;
+        this.column = aggregate == Aggregate.COUNT ? null : column;
+        this.where = where;
+        this.groupBy = groupBy;
+        this.order = order;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    // Parses the syntax shown above. Keywords are case-insensitive; strings may be quoted
+    // with ' or ", and need to be when they contain spaces.
+    public static MenuQuery parse(String text) {
+        return new Parser(text).query();
+    }
+
+    // The columns run() reads, for CSVReader.readColumns.
+    public Set<MenuColumns.Column> columns() {
+        Set<MenuColumns.Column> columns = EnumSet.noneOf(MenuColumns.Column.class);
+        if (column != null) {
+            columns.add(column);
+        }
+        if (where != null) {
+            where.addColumns(columns);
+        }
+        if (groupBy != null) {
+            columns.add(groupBy);
+        }
+        return columns;
+    }
+
+    // The filter, or null; MenuColumnFile skips the row groups it cannot match.
+    QueryCondition where() {
+        return where;
+    }
+
+    public Result run(MenuColumns table) {
+        RowFilter filter = where != null ? where.compile(table) : null;
+        RowKey key = groupBy != null ? key(table, groupBy) : (block, row) -> 0;
+        RowValue value = column != null ? value(table, column) : (block, row) -> 0;
+        Groups groups = new Groups(aggregate);
+        ColumnBlock.forEach(table, 0, table.size(), block -> {
+            if (filter == null) {
+                for (int row = block.from; row < block.to; row++) {
+                    groups.add(key.get(block, row), value.get(block, row));
+                }
+            } else {
+                for (int row = block.from; row < block.to; row++) {
+                    if (filter.test(block, row)) {
+                        groups.add(key.get(block, row), value.get(block, row));
+                    }
+                }
+            }
+        });
+        return result(table, groups);
+    }
+
+    private Result result(MenuColumns table, Groups groups) {
+        if (groupBy == null) {
+            boolean empty = groups.table.size() == 0;
+            long count = empty ? 0 : groups.table.getCount(0);
+            double value = empty ? (aggregate == Aggregate.COUNT || aggregate == Aggregate.SUM ? 0 : Double.NaN)
+                : groups.value(0);
+            return new Result(aggregate, null, new double[] {value}, new long[] {count});
+        }
+
+        Integer[] order = new Integer[groups.table.size()];
+        for (int group = 0; group < order.length; group++) {
+            order[group] = group;
+        }
+        Comparator<Integer> comparator = comparator(table, groups);
+        if (comparator != null) {
+            Arrays.sort(order, descending ? comparator.reversed() : comparator);
+        }
+        int size = Math.min(limit, order.length);
+        String[] keys = new String[size];
+        double[] values = new double[size];
+        long[] counts = new long[size];
+        for (int i = 0; i < size; i++) {
+            int group = order[i];
+            keys[i] = keyName(table, groupBy, groups.table.getKey(group));
+            values[i] = groups.value(group);
+            counts[i] = groups.table.getCount(group);
+        }
+        return new Result(aggregate, keys, values, counts);
+    }
+
+    private Comparator<Integer> comparator(MenuColumns table, Groups groups) {
+        switch (order) {
+            case VALUE: return Comparator.comparingDouble(groups::value);
+            case COUNT: return Comparator.comparingLong(groups.table::getCount);
+            case KEY:
+                if (isText(groupBy)) {
+                    return Comparator.comparing(group -> keyName(table, groupBy, groups.table.getKey(group)));
+                }
+                return Comparator.comparingInt(groups.table::getKey);
+            default: return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(aggregate.name().toLowerCase(Locale.ROOT))
+            .append('(').append(column != null ? name(column) : "*").append(')');
+        if (where != null) {
+            text.append(" where ").append(where);
+        }
+        if (groupBy != null) {
+            text.append(" group by ").append(name(groupBy));
+        }
+        if (order != Order.NONE) {
+            text.append(" order by ").append(order.name().toLowerCase(Locale.ROOT)).append(descending ? " desc" : "");
+        }
+        if (limit != Integer.MAX_VALUE) {
+            text.append(" limit ").append(limit);
+        }
+        return text.toString();
+    }
+
+    // The answer to a query: one value per group, in the query's order, or a single value
+    // when it has no group by. Averages, minimums and maximums over no rows are NaN.
+    public static final class Result {
+        private final Aggregate aggregate;
+        private final String[] keys;
+        private final double[] values;
+        private final long[] counts;
+
+        Result(Aggregate aggregate, String[] keys, double[] values, long[] counts) {
+            this.aggregate = aggregate;
+            this.keys = keys;
+            this.values = values;
+            this.counts = counts;
+        }
+
+        public boolean isGrouped() { return keys != null; }
+        public int size() { return values.length; }
+        // Group names: dictionary values, numbers or true/false
+        public String getKey(int i) { return keys[i]; }
+        public double getValue(int i) { return values[i]; }
+        // Rows that matched the filter, per group
+        public long getCount(int i) { return counts[i]; }
+
+        // Like a Map's toString, in result order: {Italian=512.5, Mexican=498.0}
+        @Override
+        public String toString() {
+            if (!isGrouped()) {
+                return format(values[0]);
+            }
+            StringBuilder text = new StringBuilder("{");
+            for (int i = 0; i < keys.length; i++) {
+                text.append(i > 0 ? ", " : "").append(keys[i]).append('=').append(format(values[i]));
+            }
+            return text.append('}').toString();
+        }
+
+        private String format(double value) {
+            return aggregate == Aggregate.COUNT ? Long.toString((long) value) : Double.toString(value);
+        }
+    }
+
+    // A compiled filter, value or group key, called with an index into the block's arrays
+    interface RowFilter {
+        boolean test(ColumnBlock block, int row);
+    }
+
+    interface RowValue {
+        double get(ColumnBlock block, int row);
+    }
+
+    interface RowKey {
+        int get(ColumnBlock block, int row);
+    }
+
+    // Numeric value of column; true is 1 for vegetarian and available.
+    static RowValue value(MenuColumns table, MenuColumns.Column column) {
+        switch (column) {
+            case PRICE: return (block, row) -> block.price[row];
+            case CALORIES: return (block, row) -> block.calories[row];
+            case PREPARATION_TIME: return (block, row) -> block.preparationTime[row];
+            case SPICY_LEVEL: return (block, row) -> block.spicyLevel[row];
+            case VEGETARIAN: return (block, row) -> (block.vegetarian[row >>> 6] >>> row) & 1L;
+            case AVAILABLE: return (block, row) -> (block.available[row >>> 6] >>> row) & 1L;
+            case ITEM_ID: return (block, row) -> table.getItemID(block.rowBase + row);
+            case CATEGORY_ID: return (block, row) -> table.getCategoryID(block.rowBase + row);
+            default: throw new IllegalArgumentException(name(column) + " is not numeric");
+        }
+    }
+
+    // Group key of column: the dictionary code, the int value, or 0/1 for the booleans.
+    private static RowKey key(MenuColumns table, MenuColumns.Column column) {
+        switch (column) {
+            case CUISINE_TYPE: return (block, row) -> block.cuisineType[row];
+            case CATEGORY_NAME: return (block, row) -> block.categoryName[row];
+            case CALORIES: return (block, row) -> block.calories[row];
+            case PREPARATION_TIME: return (block, row) -> block.preparationTime[row];
+            case SPICY_LEVEL: return (block, row) -> block.spicyLevel[row];
+            case VEGETARIAN: return (block, row) -> (int) (block.vegetarian[row >>> 6] >>> row) & 1;
+            case AVAILABLE: return (block, row) -> (int) (block.available[row >>> 6] >>> row) & 1;
+            case ITEM_ID: return (block, row) -> table.getItemID(block.rowBase + row);
+            case CATEGORY_ID: return (block, row) -> table.getCategoryID(block.rowBase + row);
+            case DESCRIPTION: return (block, row) -> block.description[row];
+            default: throw new IllegalArgumentException("Cannot group by " + name(column));
+        }
+    }
+
+    private static String keyName(MenuColumns table, MenuColumns.Column column, int key) {
+        switch (column) {
+            case CUISINE_TYPE: return table.cuisineTypes().decode(key);
+            case CATEGORY_NAME: return table.categoryNames().decode(key);
+            case DESCRIPTION: return table.descriptions().decode(key);
+            case VEGETARIAN:
+            case AVAILABLE: return Boolean.toString(key != 0);
+            default: return Integer.toString(key);
+        }
+    }
+
+    static boolean isText(MenuColumns.Column column) {
+        return column == MenuColumns.Column.ITEM_NAME || column == MenuColumns.Column.CUISINE_TYPE
+            || column == MenuColumns.Column.CATEGORY_NAME || column == MenuColumns.Column.DESCRIPTION;
+    }
+
+    static boolean isBoolean(MenuColumns.Column column) {
+        return column == MenuColumns.Column.VEGETARIAN || column == MenuColumns.Column.AVAILABLE;
+    }
+
+    // The MenuItem field name: ITEM_ID is itemID, PREPARATION_TIME is preparationTime.
+    static String name(MenuColumns.Column column) {
+        StringBuilder name = new StringBuilder();
+        for (String word : column.name().split("_")) {
+            name.append(name.length() == 0 ? word.toLowerCase(Locale.ROOT)
+                : word.equals("ID") ? word : word.charAt(0) + word.substring(1).toLowerCase(Locale.ROOT));
+        }
+        return name.toString();
+    }
+
+    static String literal(Object constant) {
+        if (constant instanceof String) {
+            return "'" + constant + "'";
+        }
+        if (constant instanceof Double && (Double) constant == Math.rint((Double) constant)) {
+            return Long.toString(((Double) constant).longValue());
+        }
+        return constant.toString();
+    }
+
+    // Count and sum per group key, plus the minimum and maximum when the aggregate needs them
+    private static final class Groups {
+        final GroupByTable table = new GroupByTable();
+        final Aggregate aggregate;
+        double[] mins = new double[0];
+        double[] maxs = new double[0];
+
+        Groups(Aggregate aggregate) {
+            this.aggregate = aggregate;
+        }
+
+        void add(int key, double value) {
+            int group = table.add(key, value);
+            if (aggregate == Aggregate.MIN || aggregate == Aggregate.MAX) {
+                if (group == mins.length) {
+                    int capacity = Math.max(16, group * 2);
+                    mins = Arrays.copyOf(mins, capacity);
+                    maxs = Arrays.copyOf(maxs, capacity);
+                    Arrays.fill(mins, group, capacity, Double.POSITIVE_INFINITY);
+                    Arrays.fill(maxs, group, capacity, Double.NEGATIVE_INFINITY);
+                }
+                mins[group] = Math.min(mins[group], value);
+                maxs[group] = Math.max(maxs[group], value);
+            }
+        }
+
+        double value(int group) {
+            switch (aggregate) {
+                case COUNT: return table.getCount(group);
+                case SUM: return table.getSum(group);
+                case AVG: return table.getAverage(group);
+                case MIN: return mins[group];
+                default: return maxs[group];
+            }
+        }
+    }
+
+    private static final class Parser {
+        private final String text;
+        private final List<String> tokens;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+            this.tokens = tokenize(text);
+        }
+
+        MenuQuery query() {
+            Aggregate aggregate = keyword(Aggregate.class, "an aggregate (count, sum, avg, min, max)");
+            expect("(");
+            MenuColumns.Column column = accept("*") ? null : column();
+            expect(")");
+            QueryCondition where = accept("where") ? or() : null;
+            MenuColumns.Column groupBy = null;
+            if (accept("group")) {
+                expect("by");
+                groupBy = column();
+            }
+            Order order = Order.NONE;
+            boolean descending = false;
+            if (accept("order")) {
+                expect("by");
+                order = keyword(Order.class, "key, value or count");
+                descending = accept("desc");
+                if (!descending) {
+                    accept("asc");
+                }
+            }
+            int limit = Integer.MAX_VALUE;
+            if (accept("limit")) {
+                String count = next("a row count");
+                try {
+                    limit = Integer.parseInt(count);
+                } catch (NumberFormatException e) {
+                    throw error("a row count", count);
+                }
+            }
+            if (position < tokens.size()) {
+                throw error("the end of the query", tokens.get(position));
+            }
+            try {
+                return new MenuQuery(aggregate, column, where, groupBy, order, descending, limit);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid query \"" + text + "\": " + e.getMessage());
+            }
+        }
+
+        private QueryCondition or() {
+            QueryCondition condition = and();
+            while (accept("or")) {
+                condition = QueryCondition.or(condition, and());
+            }
+            return condition;
+        }
+
+        private QueryCondition and() {
+            QueryCondition condition = not();
+            while (accept("and")) {
+                condition = QueryCondition.and(condition, not());
+            }
+            return condition;
+        }
+
+        private QueryCondition not() {
+            if (accept("not")) {
+                return QueryCondition.not(not());
+            }
+            if (accept("(")) {
+                QueryCondition condition = or();
+                expect(")");
+                return condition;
+            }
+            MenuColumns.Column column = column();
+            QueryCondition.Op op = op();
+            // A bare boolean column means column = true
+            Object constant = op != null ? constant() : Boolean.TRUE;
+            try {
+                return QueryCondition.compare(column, op != null ? op : QueryCondition.Op.EQ, constant);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid query \"" + text + "\": " + e.getMessage());
+            }
+        }
+
+        private QueryCondition.Op op() {
+            String token = position < tokens.size() ? tokens.get(position) : "";
+            QueryCondition.Op op;
+            switch (token) {
+                case "=": case "==": op = QueryCondition.Op.EQ; break;
+                case "!=": case "<>": op = QueryCondition.Op.NE; break;
+                case "<": op = QueryCondition.Op.LT; break;
+                case "<=": op = QueryCondition.Op.LE; break;
+                case ">": op = QueryCondition.Op.GT; break;
+                case ">=": op = QueryCondition.Op.GE; break;
+                default: return null;
+            }
+            position++;
+            return op;
+        }
+
+        private Object constant() {
+            String token = next("a value");
+            char first = token.charAt(0);
+            if (first == '\'' || first == '"') {
+                return token.substring(1, token.length() - 1);
+            }
+            if (token.equalsIgnoreCase("true") || token.equalsIgnoreCase("false")) {
+                return Boolean.valueOf(token);
+            }
+            if (Character.isDigit(first) || first == '-' || first == '.') {
+                try {
+                    return Double.valueOf(token);
+                } catch (NumberFormatException e) {
+                    throw error("a value", token);
+                }
+            }
+            return token;
+        }
+
+        private MenuColumns.Column column() {
+            String token = next("a column");
+            String name = token.replace("_", "").toUpperCase(Locale.ROOT);
+            for (MenuColumns.Column column : MenuColumns.Column.values()) {
+                if (column.name().replace("_", "").equals(name)) {
+                    return column;
+                }
+            }
+            throw error("a column", token);
+        }
+
+        private <E extends Enum<E>> E keyword(Class<E> type, String expected) {
+            String token = next(expected);
+            for (E constant : type.getEnumConstants()) {
+                if (constant.name().equalsIgnoreCase(token)) {
+                    return constant;
+                }
+            }
+            throw error(expected, token);
+        }
+
+        private boolean accept(String keyword) {
+            if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String keyword) {
+            if (!accept(keyword)) {
+                throw error("'" + keyword + "'", position < tokens.size() ? tokens.get(position) : null);
+            }
+        }
+
+        private String next(String expected) {
+            if (position == tokens.size()) {
+                throw error(expected, null);
+            }
+            return tokens.get(position++);
+        }
+
+        private IllegalArgumentException error(String expected, String found) {
+            return new IllegalArgumentException("Invalid query \"" + text + "\": expected " + expected + " but found "
+                + (found != null ? "'" + found + "'" : "the end"));
+        }
+
+        // Words and numbers, quoted strings (quotes kept), and the symbols ( ) * = == != <> < <= > >=
+        private List<String> tokenize(String text) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                int start = i;
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                if (c == '\'' || c == '"') {
+                    i = text.indexOf(c, i + 1);
+                    if (i < 0) {
+                        throw new IllegalArgumentException("Invalid query \"" + text + "\": unterminated string");
+                    }
+                    i++;
+                } else if (Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-') {
+                    while (i < text.length() && (Character.isLetterOrDigit(text.charAt(i))
+                            || "_.-".indexOf(text.charAt(i)) >= 0)) {
+                        i++;
+                    }
+                } else if ("<>=!".indexOf(c) >= 0) {
+                    i++;
+                    if (i < text.length() && (text.charAt(i) == '=' || (c == '<' && text.charAt(i) == '>'))) {
+                        i++;
+                    }
+                } else if ("()*".indexOf(c) >= 0) {
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("Invalid query \"" + text + "\": unexpected '" + c + "'");
+                }
+                tokens.add(text.substring(start, i));
+            }
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Binary image of a MenuTable, so a run can skip CSV parsing when the source is unchanged.
+//
+// Layout (little-endian):
+//   header      magic "MENUSNAP", int version, int rows, source fingerprint (size, mtime, checksum)
+//   dictionaries  cuisineType, categoryName, description: int count, then (int length, UTF-8 bytes) each
+//   itemName    (int length, UTF-8 bytes) per row
+//   columns     fixed-width arrays: itemID, categoryID, calories, preparationTime, spicyLevel,
+//               cuisineType, categoryName, description (int), price (double),
+//               vegetarian, available (long bitsets)
+//   trailer     CRC32C of everything before it
+public final class MenuSnapshot {
+    private static final long MAGIC = 0x50414E53554E454DL; // "MENUSNAP" in little-endian byte order
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8 + 4 + 4 + 8 + 8 + 8;
+    // Mapping window for reads; a single MappedByteBuffer is limited to 2 GB
+    private static final int WINDOW = 256 << 20;
+
+    private MenuSnapshot() {
+    }
+
+    public static void write(MenuTable table, FileFingerprint source, Path snapshotPath) throws IOException {
+        write(table, source, snapshotPath, new IntBuffer[] {
+                IntBuffer.wrap(table.itemIDColumn()), IntBuffer.wrap(table.categoryIDColumn()),
+                IntBuffer.wrap(table.caloriesColumn()), IntBuffer.wrap(table.preparationTimeColumn()),
+                IntBuffer.wrap(table.spicyLevelColumn()), IntBuffer.wrap(table.cuisineTypeColumn()),
+                IntBuffer.wrap(table.categoryNameColumn()), IntBuffer.wrap(table.descriptionColumn())},
+            DoubleBuffer.wrap(table.priceColumn()),
+            new LongBuffer[] {LongBuffer.wrap(table.vegetarianBits()), LongBuffer.wrap(table.availableBits())});
+    }
+
+    public static void write(OffHeapMenuTable table, FileFingerprint source, Path snapshotPath) throws IOException {
+        write(table, source, snapshotPath, new IntBuffer[] {
+                table.itemIDColumn(), table.categoryIDColumn(), table.caloriesColumn(), table.preparationTimeColumn(),
+                table.spicyLevelColumn(), table.cuisineTypeColumn(), table.categoryNameColumn(),
+                table.descriptionColumn()},
+            table.priceColumn(), new LongBuffer[] {table.vegetarianBits(), table.availableBits()});
+    }
+
+    // ints holds the int columns and bits the bitsets of table, in the order of the layout above
+    private static void write(MenuColumns table, FileFingerprint source, Path snapshotPath, IntBuffer[] ints,
+            DoubleBuffer price, LongBuffer[] bits) throws IOException {
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            int rows = table.size();
+            putHeader(out, table, source);
+            for (int row = 0; row < rows; row++) {
+                out.putString(table.getItemName(row));
+            }
+
+            for (IntBuffer column : ints) {
+                out.putInts(column, rows);
+            }
+            out.putDoubles(price, rows);
+            for (LongBuffer column : bits) {
+                out.putLongs(column, bitWords(rows));
+            }
+            out.finish();
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns the fingerprint of the CSV the snapshot was written from, or null if the file
+    // is not a snapshot of the current version.
+    public static FileFingerprint readSource(Path snapshotPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES + 8) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int read;
+            do {
+                read = channel.read(header, header.position());
+            } while (read > 0 && header.hasRemaining());
+            header.flip();
+            if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            header.getInt();
+            return new FileFingerprint(header.getLong(), header.getLong(), header.getLong());
+        }
+    }
+
+    public static MenuTable read(Path snapshotPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            verifyChecksum(channel);
+            Input in = new Input(channel);
+            if (in.getLong() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " menu snapshot: " + snapshotPath);
+            }
+            int rows = in.getInt();
+            in.getLong();
+            in.getLong();
+            in.getLong();
+
+            List<String> cuisineTypes = getDictionary(in);
+            List<String> categoryNames = getDictionary(in);
+            List<String> descriptions = getDictionary(in);
+            String[] itemName = new String[rows];
+            for (int row = 0; row < rows; row++) {
+                itemName[row] = in.getString();
+            }
+
+            int[] itemID = in.getInts(rows);
+            int[] categoryID = in.getInts(rows);
+            int[] calories = in.getInts(rows);
+            int[] preparationTime = in.getInts(rows);
+            int[] spicyLevel = in.getInts(rows);
+            int[] cuisineType = in.getInts(rows);
+            int[] categoryName = in.getInts(rows);
+            int[] description = in.getInts(rows);
+            double[] price = in.getDoubles(rows);
+            long[] vegetarian = in.getLongs(bitWords(rows));
+            long[] available = in.getLongs(bitWords(rows));
+
+            return new MenuTable(rows, itemID, itemName, categoryID, price, calories, preparationTime, cuisineType,
+                vegetarian, spicyLevel, available, categoryName, description, cuisineTypes, categoryNames, descriptions);
+        }
+    }
+
+    // Maps the snapshot's columns instead of copying them onto the heap. Only the
+    // dictionaries and an index of where each item name starts are read up front; the rest
+    // is paged in from the file as it is scanned, and stays valid after the file is closed.
+    public static OffHeapMenuTable map(Path snapshotPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            verifyChecksum(channel);
+            Input in = new Input(channel);
+            if (in.getLong() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " menu snapshot: " + snapshotPath);
+            }
+            int rows = in.getInt();
+            in.getLong();
+            in.getLong();
+            in.getLong();
+
+            List<String> cuisineTypes = getDictionary(in);
+            List<String> categoryNames = getDictionary(in);
+            List<String> descriptions = getDictionary(in);
+            long namesStart = in.position();
+            ByteBuffer nameStarts = ByteBuffer.allocateDirect(rows * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int row = 0; row < rows; row++) {
+                int length = in.getInt();
+                nameStarts.putInt(row * 4, (int) (in.position() - namesStart));
+                in.skip(length);
+            }
+
+            long position = in.position();
+            ByteBuffer names = mapRegion(channel, namesStart, position - namesStart);
+            ByteBuffer itemID = mapRegion(channel, position, rows * 4L);
+            ByteBuffer categoryID = mapRegion(channel, position += rows * 4L, rows * 4L);
+            ByteBuffer calories = mapRegion(channel, position += rows * 4L, rows * 4L);
+            ByteBuffer preparationTime = mapRegion(channel, position += rows * 4L, rows * 4L);
+            ByteBuffer spicyLevel = mapRegion(channel, position += rows * 4L, rows * 4L);
+            ByteBuffer cuisineType = mapRegion(channel, position += rows * 4L, rows * 4L);
+            ByteBuffer categoryName = mapRegion(channel, position += rows * 4L, rows * 4L);
+            ByteBuffer description = mapRegion(channel, position += rows * 4L, rows * 4L);
+            ByteBuffer price = mapRegion(channel, position += rows * 4L, rows * 8L);
+            ByteBuffer vegetarian = mapRegion(channel, position += rows * 8L, bitWords(rows) * 8L);
+            ByteBuffer available = mapRegion(channel, position += bitWords(rows) * 8L, bitWords(rows) * 8L);
+
+            return new OffHeapMenuTable(rows, itemID, names, nameStarts, categoryID, price, calories, preparationTime,
+                cuisineType, vegetarian, spicyLevel, available, categoryName, description,
+                cuisineTypes, categoryNames, descriptions);
+        }
+    }
+
+    private static void putHeader(Output out, MenuColumns table, FileFingerprint source) throws IOException {
+        out.putLong(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(table.size());
+        out.putLong(source.getSize());
+        out.putLong(source.getLastModified());
+        out.putLong(source.getChecksum());
+
+        putDictionary(out, table.cuisineTypes());
+        putDictionary(out, table.categoryNames());
+        putDictionary(out, table.descriptions());
+    }
+
+    private static ByteBuffer mapRegion(FileChannel channel, long position, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Menu snapshot column of " + length + " bytes cannot be mapped as one buffer");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putDictionary(Output out, StringDictionary dictionary) throws IOException {
+        out.putInt(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            out.putString(dictionary.decode(code));
+        }
+    }
+
+    private static List<String> getDictionary(Input in) throws IOException {
+        int count = in.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.getString());
+        }
+        return values;
+    }
+
+    private static void verifyChecksum(FileChannel channel) throws IOException {
+        long bodySize = channel.size() - 8;
+        CRC32C crc = new CRC32C();
+        for (long position = 0; position < bodySize; position += WINDOW) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, bodySize - position)));
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(trailer, bodySize);
+        if (trailer.flip().remaining() != 8 || trailer.getLong() != crc.getValue()) {
+            throw new IOException("Menu snapshot checksum mismatch");
+        }
+    }
+
+    private static int bitWords(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    // Buffered little-endian writer that checksums everything it writes.
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buf.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buf.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int off = 0; off < bytes.length; ) {
+                ensure(1);
+                int count = Math.min(bytes.length - off, buf.remaining());
+                buf.put(bytes, off, count);
+                off += count;
+            }
+        }
+
+        void putInts(IntBuffer values, int length) throws IOException {
+            for (int off = 0; off < length; ) {
+                ensure(4);
+                int count = Math.min(length - off, buf.remaining() / 4);
+                buf.asIntBuffer().put(values.slice(off, count));
+                buf.position(buf.position() + count * 4);
+                off += count;
+            }
+        }
+
+        void putDoubles(DoubleBuffer values, int length) throws IOException {
+            for (int off = 0; off < length; ) {
+                ensure(8);
+                int count = Math.min(length - off, buf.remaining() / 8);
+                buf.asDoubleBuffer().put(values.slice(off, count));
+                buf.position(buf.position() + count * 8);
+                off += count;
+            }
+        }
+
+        void putLongs(LongBuffer values, int length) throws IOException {
+            for (int off = 0; off < length; ) {
+                ensure(8);
+                int count = Math.min(length - off, buf.remaining() / 8);
+                buf.asLongBuffer().put(values.slice(off, count));
+                buf.position(buf.position() + count * 8);
+                off += count;
+            }
+        }
+
+        void finish() throws IOException {
+            flush();
+            buf.putLong(crc.getValue());
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            crc.update(buf.duplicate());
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+    }
+
+    // Little-endian reader over successive memory-mapped windows of the snapshot.
+    private static final class Input {
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer buf;
+
+        Input(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buf.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(8);
+            return buf.getLong();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            ensure(length);
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int[] getInts(int length) throws IOException {
+            int[] values = new int[length];
+            for (int off = 0; off < length; ) {
+                ensure(4);
+                int count = Math.min(length - off, buf.remaining() / 4);
+                buf.asIntBuffer().get(values, off, count);
+                buf.position(buf.position() + count * 4);
+                off += count;
+            }
+            return values;
+        }
+
+        double[] getDoubles(int length) throws IOException {
+            double[] values = new double[length];
+            for (int off = 0; off < length; ) {
+                ensure(8);
+                int count = Math.min(length - off, buf.remaining() / 8);
+                buf.asDoubleBuffer().get(values, off, count);
+                buf.position(buf.position() + count * 8);
+                off += count;
+            }
+            return values;
+        }
+
+        long[] getLongs(int length) throws IOException {
+            long[] values = new long[length];
+            for (int off = 0; off < length; ) {
+                ensure(8);
+                int count = Math.min(length - off, buf.remaining() / 8);
+                buf.asLongBuffer().get(values, off, count);
+                buf.position(buf.position() + count * 8);
+                off += count;
+            }
+            return values;
+        }
+
+        long position() {
+            return windowStart + buf.position();
+        }
+
+        void skip(int bytes) throws IOException {
+            if (buf.remaining() >= bytes) {
+                buf.position(buf.position() + bytes);
+            } else if (position() + bytes > size) {
+                throw new IOException("Menu snapshot is truncated");
+            } else {
+                map(position() + bytes);
+            }
+        }
+
+        // Remaps so that at least bytes are available at the current position.
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                long position = windowStart + buf.position();
+                if (position + bytes > size) {
+                    throw new IOException("Menu snapshot is truncated");
+                }
+                map(position);
+                if (buf.remaining() < bytes) {
+                    throw new IOException("Menu snapshot field of " + bytes + " bytes exceeds the mapping window");
+                }
+            }
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+// Accumulates every metric DataAnalyzer reports in a single pass over the columns of a
+// MenuTable or OffHeapMenuTable. Two instances built over consecutive row ranges of the
+// same table can be merged with combine(). Quantile sketches are about ten times as
+// expensive as everything else together, so they are only kept by instances created with
+// withDistributions(), and the histograms and cross-tabs only by withHistograms().
+public class MenuStats {
+    public enum Metric { PRICE, CALORIES, PREPARATION_TIME }
+    private static final int METRICS = Metric.values().length;
+
+    private final MenuColumns table;
+    private long itemCount;
+    // Item count and price total per category code, cuisine code and spicy level
+    private final GroupByTable priceByCategory;
+    private final GroupByTable priceByCuisine = new GroupByTable();
+    private final GroupByTable priceBySpicyLevel = new GroupByTable();
+    private int mostExpensive = -1;
+    private int leastExpensive = -1;
+    private int highestCalorie = -1;
+    private double totalVegPrepTime;
+    private double totalNonVegPrepTime;
+    private long vegCount;
+    private long nonVegCount;
+    private long availableCount;
+    // Quantile sketches indexed by Metric ordinal, overall and per category code (like
+    // priceByCategory, sized to the table's categories); null unless distributions are tracked
+    private final QuantileSketch[] distribution;
+    private QuantileSketch[][] distributionByCategory;
+    // null unless histograms are tracked
+    private final MenuHistograms histograms;
+
+    private MenuStats(MenuColumns table, boolean distributions) {
+        this(table, distributions, null);
+    }
+
+    private MenuStats(MenuColumns table, boolean distributions, MenuHistograms histograms) {
+        this.table = table;
+        this.priceByCategory = new GroupByTable(table.categoryNames().size());
+        this.distribution = distributions ? newSketches() : null;
+        this.distributionByCategory = new QuantileSketch[distributions ? table.categoryNames().size() : 0][];
+        for (int code = 0; code < distributionByCategory.length; code++) {
+            distributionByCategory[code] = newSketches();
+        }
+        this.histograms = histograms;
+    }
+
+    public static MenuStats of(MenuColumns table) {
+        return of(table, 0, table.size());
+    }
+
+    public static MenuStats of(MenuColumns table, int from, int to) {
+        MenuStats stats = new MenuStats(table, false);
+        stats.addRows(from, to);
+        return stats;
+    }
+
+    // Like of(), but also builds the quantile sketches behind getDistribution(), in the same scan.
+    public static MenuStats withDistributions(MenuColumns table) {
+        return withDistributions(table, 0, table.size());
+    }
+
+    public static MenuStats withDistributions(MenuColumns table, int from, int to) {
+        MenuStats stats = new MenuStats(table, true);
+        stats.addRows(from, to);
+        return stats;
+    }
+
+    // Like of(), but also fills the histograms and cross-tabs behind getHistograms(), in the
+    // same scan; bucket widths are in dollars, calories and minutes.
+    public static MenuStats withHistograms(MenuColumns table, double priceWidth, double caloriesWidth,
+            double preparationTimeWidth) {
+        return withHistograms(table, 0, table.size(), priceWidth, caloriesWidth, preparationTimeWidth);
+    }
+
+    public static MenuStats withHistograms(MenuColumns table, int from, int to, double priceWidth,
+            double caloriesWidth, double preparationTimeWidth) {
+        return of(table, from, to, false, new MenuHistograms(table, priceWidth, caloriesWidth, preparationTimeWidth));
+    }
+
+    // Every metric of the table in one scan: the quantile sketches too when distributions is
+    // set, and the histograms when they are given.
+    static MenuStats of(MenuColumns table, int from, int to, boolean distributions, MenuHistograms histograms) {
+        MenuStats stats = new MenuStats(table, distributions, histograms);
+        stats.addRows(from, to);
+        return stats;
+    }
+
+    private void addRows(int from, int to) {
+        ColumnBlock.forEach(table, from, to, this::addBlock);
+        itemCount += Math.max(0, to - from);
+    }
+
+    private void addBlock(ColumnBlock block) {
+        int from = block.from;
+        int to = block.to;
+        double[] price = block.price;
+        int[] categoryName = block.categoryName;
+        int[] cuisineType = block.cuisineType;
+        int[] spicyLevel = block.spicyLevel;
+        MenuHistograms histograms = this.histograms;
+        QuantileSketch[] distribution = this.distribution;
+
+        for (int row = from; row < to; row++) {
+            priceByCategory.add(categoryName[row], price[row]);
+            priceByCuisine.add(cuisineType[row], price[row]);
+            priceBySpicyLevel.add(spicyLevel[row], price[row]);
+            if (histograms != null) {
+                histograms.add(block, row);
+            }
+            if (distribution != null) {
+                addDistributions(block, row);
+            }
+        }
+        if (to > from) {
+            addReductions(block);
+        }
+        availableCount += countBits(block.available, from, to);
+    }
+
+    // The metrics that are plain column reductions, vectorized when ColumnReductions.get() is
+    private void addReductions(ColumnBlock block) {
+        ColumnReductions reductions = ColumnReductions.get();
+        int from = block.from;
+        int to = block.to;
+        double[] price = block.price;
+        int[] calories = block.calories;
+        int[] preparationTime = block.preparationTime;
+        long[] vegetarian = block.vegetarian;
+
+        // The first row holding the extreme value, like Collections.max/min
+        int rangeMostExpensive = reductions.indexOf(price, from, to, reductions.max(price, from, to));
+        int rangeLeastExpensive = reductions.indexOf(price, from, to, reductions.min(price, from, to));
+        int rangeHighestCalorie = reductions.indexOf(calories, from, to, reductions.max(calories, from, to));
+        if (mostExpensive < 0 || price[rangeMostExpensive] > table.getPrice(mostExpensive)) {
+            mostExpensive = rangeMostExpensive + block.rowBase;
+        }
+        if (leastExpensive < 0 || price[rangeLeastExpensive] < table.getPrice(leastExpensive)) {
+            leastExpensive = rangeLeastExpensive + block.rowBase;
+        }
+        if (highestCalorie < 0 || calories[rangeHighestCalorie] > table.getCalories(highestCalorie)) {
+            highestCalorie = rangeHighestCalorie + block.rowBase;
+        }
+
+        long vegPrepTime = reductions.maskedSum(preparationTime, vegetarian, from, to);
+        long vegRows = countBits(vegetarian, from, to);
+        totalVegPrepTime += vegPrepTime;
+        totalNonVegPrepTime += reductions.sum(preparationTime, from, to) - vegPrepTime;
+        vegCount += vegRows;
+        nonVegCount += to - from - vegRows;
+    }
+
+    private void addDistributions(ColumnBlock block, int row) {
+        double price = block.price[row];
+        int calories = block.calories[row];
+        int preparationTime = block.preparationTime[row];
+        QuantileSketch[] categorySketches = distributionByCategory[block.categoryName[row]];
+        distribution[0].add(price);
+        distribution[1].add(calories);
+        distribution[2].add(preparationTime);
+        categorySketches[0].add(price);
+        categorySketches[1].add(calories);
+        categorySketches[2].add(preparationTime);
+    }
+
+    // Folds in the stats of rows that come after the ones seen by this instance.
+    public MenuStats combine(MenuStats other) {
+        if (other.table != table) {
+            throw new IllegalArgumentException("Cannot combine stats of different tables");
+        }
+        if ((other.distribution == null) != (distribution == null)) {
+            throw new IllegalArgumentException("Cannot combine stats with and without distributions");
+        }
+        if ((other.histograms == null) != (histograms == null)) {
+            throw new IllegalArgumentException("Cannot combine stats with and without histograms");
+        }
+        itemCount += other.itemCount;
+        priceByCategory.combine(other.priceByCategory);
+        priceByCuisine.combine(other.priceByCuisine);
+        priceBySpicyLevel.combine(other.priceBySpicyLevel);
+
+        if (other.mostExpensive >= 0
+                && (mostExpensive < 0 || table.getPrice(other.mostExpensive) > table.getPrice(mostExpensive))) {
+            mostExpensive = other.mostExpensive;
+        }
+        if (other.leastExpensive >= 0
+                && (leastExpensive < 0 || table.getPrice(other.leastExpensive) < table.getPrice(leastExpensive))) {
+            leastExpensive = other.leastExpensive;
+        }
+        if (other.highestCalorie >= 0
+                && (highestCalorie < 0 || table.getCalories(other.highestCalorie) > table.getCalories(highestCalorie))) {
+            highestCalorie = other.highestCalorie;
+        }
+
+        totalVegPrepTime += other.totalVegPrepTime;
+        totalNonVegPrepTime += other.totalNonVegPrepTime;
+        vegCount += other.vegCount;
+        nonVegCount += other.nonVegCount;
+        availableCount += other.availableCount;
+        if (histograms != null) {
+            histograms.combine(other.histograms);
+        }
+
+        if (distribution == null) {
+            return this;
+        }
+        for (int metric = 0; metric < METRICS; metric++) {
+            distribution[metric].merge(other.distribution[metric]);
+        }
+        for (int code = 0; code < other.distributionByCategory.length; code++) {
+            if (other.distributionByCategory[code] != null) {
+                QuantileSketch[] sketches = sketchesOf(code);
+                for (int metric = 0; metric < METRICS; metric++) {
+                    sketches[metric].merge(other.distributionByCategory[code][metric]);
+                }
+            }
+        }
+        return this;
+    }
+
+    public MenuColumns getTable() { return table; }
+    public long getItemCount() { return itemCount; }
+
+    public Map<String, Long> getItemCountPerCategory() {
+        return counts(priceByCategory, table.categoryNames()::decode);
+    }
+
+    public Map<String, Double> getAveragePricePerCategory() {
+        return averages(priceByCategory, table.categoryNames()::decode);
+    }
+
+    public Map<String, Long> getItemCountPerCuisine() {
+        return counts(priceByCuisine, table.cuisineTypes()::decode);
+    }
+
+    public Map<String, Double> getAveragePricePerCuisine() {
+        return averages(priceByCuisine, table.cuisineTypes()::decode);
+    }
+
+    public Map<Integer, Long> getItemCountPerSpicyLevel() {
+        return counts(priceBySpicyLevel, Integer::valueOf);
+    }
+
+    public Map<Integer, Double> getAveragePricePerSpicyLevel() {
+        return averages(priceBySpicyLevel, Integer::valueOf);
+    }
+
+    // Row indexes into getTable(), or -1 when no rows were seen.
+    public int getMostExpensiveRow() { return mostExpensive; }
+    public int getLeastExpensiveRow() { return leastExpensive; }
+    public int getHighestCalorieRow() { return highestCalorie; }
+
+    public double getAverageVegPrepTime() { return vegCount > 0 ? totalVegPrepTime / vegCount : 0; }
+    public double getAverageNonVegPrepTime() { return nonVegCount > 0 ? totalNonVegPrepTime / nonVegCount : 0; }
+    public long getAvailableCount() { return availableCount; }
+    public long getUnavailableCount() { return itemCount - availableCount; }
+
+    // Raw aggregates for MenuSummary
+    GroupByTable priceByCategory() { return priceByCategory; }
+    GroupByTable priceByCuisine() { return priceByCuisine; }
+    GroupByTable priceBySpicyLevel() { return priceBySpicyLevel; }
+    double totalVegPrepTime() { return totalVegPrepTime; }
+    double totalNonVegPrepTime() { return totalNonVegPrepTime; }
+    long vegCount() { return vegCount; }
+    long nonVegCount() { return nonVegCount; }
+
+    public boolean hasDistributions() { return distribution != null; }
+
+    // Approximate distribution of a metric; see QuantileSketch for the error bounds.
+    public QuantileSketch getDistribution(Metric metric) {
+        requireDistributions();
+        return distribution[metric.ordinal()];
+    }
+
+    public Map<String, QuantileSketch> getDistributionPerCategory(Metric metric) {
+        requireDistributions();
+        Map<String, QuantileSketch> sketches = new HashMap<>();
+        for (int group = 0; group < priceByCategory.size(); group++) {
+            int code = priceByCategory.getKey(group);
+            sketches.put(table.categoryNames().decode(code), distributionByCategory[code][metric.ordinal()]);
+        }
+        return sketches;
+    }
+
+    public boolean hasHistograms() { return histograms != null; }
+
+    public MenuHistograms getHistograms() {
+        if (histograms == null) {
+            throw new IllegalStateException("Histograms are only kept by MenuStats.withHistograms()");
+        }
+        return histograms;
+    }
+
+    private static <K> Map<K, Long> counts(GroupByTable groups, IntFunction<K> keyName) {
+        Map<K, Long> counts = new HashMap<>();
+        for (int group = 0; group < groups.size(); group++) {
+            counts.put(keyName.apply(groups.getKey(group)), groups.getCount(group));
+        }
+        return counts;
+    }
+
+    private static <K> Map<K, Double> averages(GroupByTable groups, IntFunction<K> keyName) {
+        Map<K, Double> averages = new HashMap<>();
+        for (int group = 0; group < groups.size(); group++) {
+            averages.put(keyName.apply(groups.getKey(group)), groups.getAverage(group));
+        }
+        return averages;
+    }
+
+    private void requireDistributions() {
+        if (distribution == null) {
+            throw new IllegalStateException("Distributions are only kept by MenuStats.withDistributions()");
+        }
+    }
+
+    // For combine(): other may have seen categories added to the table after this was created
+    private QuantileSketch[] sketchesOf(int categoryCode) {
+        if (categoryCode >= distributionByCategory.length) {
+            distributionByCategory = Arrays.copyOf(distributionByCategory,
+                Math.max(categoryCode + 1, distributionByCategory.length * 2));
+        }
+        QuantileSketch[] sketches = distributionByCategory[categoryCode];
+        if (sketches == null) {
+            sketches = newSketches();
+            distributionByCategory[categoryCode] = sketches;
+        }
+        return sketches;
+    }
+
+    private static QuantileSketch[] newSketches() {
+        QuantileSketch[] sketches = new QuantileSketch[METRICS];
+        for (int metric = 0; metric < METRICS; metric++) {
+            sketches[metric] = new QuantileSketch();
+        }
+        return sketches;
+    }
+
+    private static long countBits(long[] bits, int from, int to) {
+        long count = 0;
+        int row = from;
+        // Single bits up to the next word boundary, then whole words, then the tail
+        for (; row < to && (row & 63) != 0; row++) {
+            count += (bits[row >>> 6] >>> row) & 1L;
+        }
+        for (; row + 64 <= to; row += 64) {
+            count += Long.bitCount(bits[row >>> 6]);
+        }
+        for (; row < to; row++) {
+            count += (bits[row >>> 6] >>> row) & 1L;
+        }
+        return count;
+    }
+}
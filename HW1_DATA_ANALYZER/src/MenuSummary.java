@@ -0,0 +1,334 @@
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+// The aggregates behind the DataAnalyzer reports, detached from the MenuTable they were
+// computed over: groups are keyed by name and the extreme items are copied out, so the
+// size depends on the number of groups rather than rows. Summaries of different files
+// (with different dictionary codes) can be merged with combine(), and a summary can be
+// stored with write() and loaded with read(), which is how SummaryCache keeps it.
+public class MenuSummary {
+    private long itemCount;
+    // Groups in first-seen order
+    private final Map<String, Group> priceByCategory = new LinkedHashMap<>();
+    private final Map<String, Group> priceByCuisine = new LinkedHashMap<>();
+    private final Map<Integer, Group> priceBySpicyLevel = new LinkedHashMap<>();
+    private MenuItem mostExpensive;
+    private MenuItem leastExpensive;
+    private MenuItem highestCalorie;
+    private double totalVegPrepTime;
+    private double totalNonVegPrepTime;
+    private long vegCount;
+    private long nonVegCount;
+    private long availableCount;
+    // Copies of the quantile sketches, indexed by Metric ordinal, overall and per category;
+    // null unless summarized from MenuStats.withDistributions()
+    private QuantileSketch[] distribution;
+    private final Map<String, QuantileSketch[]> distributionByCategory = new LinkedHashMap<>();
+
+    public MenuSummary() {
+    }
+
+    public static MenuSummary of(MenuStats stats) {
+        MenuSummary summary = new MenuSummary();
+        MenuColumns table = stats.getTable();
+        summary.itemCount = stats.getItemCount();
+        addGroups(summary.priceByCategory, stats.priceByCategory(), table.categoryNames()::decode);
+        addGroups(summary.priceByCuisine, stats.priceByCuisine(), table.cuisineTypes()::decode);
+        addGroups(summary.priceBySpicyLevel, stats.priceBySpicyLevel(), Integer::valueOf);
+        summary.mostExpensive = itemAt(table, stats.getMostExpensiveRow());
+        summary.leastExpensive = itemAt(table, stats.getLeastExpensiveRow());
+        summary.highestCalorie = itemAt(table, stats.getHighestCalorieRow());
+        summary.totalVegPrepTime = stats.totalVegPrepTime();
+        summary.totalNonVegPrepTime = stats.totalNonVegPrepTime();
+        summary.vegCount = stats.vegCount();
+        summary.nonVegCount = stats.nonVegCount();
+        summary.availableCount = stats.getAvailableCount();
+        if (stats.hasDistributions()) {
+            MenuStats.Metric[] metrics = MenuStats.Metric.values();
+            summary.distribution = new QuantileSketch[metrics.length];
+            for (MenuStats.Metric metric : metrics) {
+                summary.distribution[metric.ordinal()] = stats.getDistribution(metric).copy();
+                stats.getDistributionPerCategory(metric).forEach((category, sketch) -> summary.distributionByCategory
+                    .computeIfAbsent(category, name -> new QuantileSketch[metrics.length])[metric.ordinal()] = sketch.copy());
+            }
+        }
+        return summary;
+    }
+
+    // Folds in the summary of items that come after the ones seen by this one, so ties
+    // keep this summary's item.
+    public MenuSummary combine(MenuSummary other) {
+        boolean empty = itemCount == 0;
+        itemCount += other.itemCount;
+        combineGroups(priceByCategory, other.priceByCategory);
+        combineGroups(priceByCuisine, other.priceByCuisine);
+        combineGroups(priceBySpicyLevel, other.priceBySpicyLevel);
+        if (other.mostExpensive != null && (mostExpensive == null || other.mostExpensive.getPrice() > mostExpensive.getPrice())) {
+            mostExpensive = other.mostExpensive;
+        }
+        if (other.leastExpensive != null && (leastExpensive == null || other.leastExpensive.getPrice() < leastExpensive.getPrice())) {
+            leastExpensive = other.leastExpensive;
+        }
+        if (other.highestCalorie != null && (highestCalorie == null || other.highestCalorie.getCalories() > highestCalorie.getCalories())) {
+            highestCalorie = other.highestCalorie;
+        }
+        totalVegPrepTime += other.totalVegPrepTime;
+        totalNonVegPrepTime += other.totalNonVegPrepTime;
+        vegCount += other.vegCount;
+        nonVegCount += other.nonVegCount;
+        availableCount += other.availableCount;
+        if (other.distribution != null && (distribution != null || empty)) {
+            if (distribution == null) {
+                distribution = copySketches(other.distribution);
+            } else {
+                mergeSketches(distribution, other.distribution);
+            }
+            for (Map.Entry<String, QuantileSketch[]> category : other.distributionByCategory.entrySet()) {
+                QuantileSketch[] sketches = distributionByCategory.get(category.getKey());
+                if (sketches == null) {
+                    distributionByCategory.put(category.getKey(), copySketches(category.getValue()));
+                } else {
+                    mergeSketches(sketches, category.getValue());
+                }
+            }
+        } else if (other.itemCount > 0) {
+            // The distributions would only cover some of the items
+            distribution = null;
+            distributionByCategory.clear();
+        }
+        return this;
+    }
+
+    public long getItemCount() { return itemCount; }
+
+    public Map<String, Long> getItemCountPerCategory() { return counts(priceByCategory); }
+    public Map<String, Double> getAveragePricePerCategory() { return averages(priceByCategory); }
+    public Map<String, Long> getItemCountPerCuisine() { return counts(priceByCuisine); }
+    public Map<String, Double> getAveragePricePerCuisine() { return averages(priceByCuisine); }
+    public Map<Integer, Long> getItemCountPerSpicyLevel() { return counts(priceBySpicyLevel); }
+    public Map<Integer, Double> getAveragePricePerSpicyLevel() { return averages(priceBySpicyLevel); }
+
+    // null when no items were seen
+    public MenuItem getMostExpensiveItem() { return mostExpensive; }
+    public MenuItem getLeastExpensiveItem() { return leastExpensive; }
+    public MenuItem getHighestCalorieItem() { return highestCalorie; }
+
+    public double getAverageVegPrepTime() { return vegCount > 0 ? totalVegPrepTime / vegCount : 0; }
+    public double getAverageNonVegPrepTime() { return nonVegCount > 0 ? totalNonVegPrepTime / nonVegCount : 0; }
+    public long getAvailableCount() { return availableCount; }
+    public long getUnavailableCount() { return itemCount - availableCount; }
+
+    public boolean hasDistributions() { return distribution != null; }
+
+    // Like MenuStats.getDistribution(); only for summaries of stats with distributions.
+    public QuantileSketch getDistribution(MenuStats.Metric metric) {
+        requireDistributions();
+        return distribution[metric.ordinal()];
+    }
+
+    public Map<String, QuantileSketch> getDistributionPerCategory(MenuStats.Metric metric) {
+        requireDistributions();
+        Map<String, QuantileSketch> sketches = new HashMap<>();
+        distributionByCategory.forEach((category, categorySketches) -> sketches.put(category, categorySketches[metric.ordinal()]));
+        return sketches;
+    }
+
+    // Binary form for SummaryCache; groups keep their first-seen order.
+    void write(DataOutput out) throws IOException {
+        out.writeLong(itemCount);
+        writeGroups(out, priceByCategory);
+        writeGroups(out, priceByCuisine);
+        writeGroups(out, priceBySpicyLevel);
+        writeItem(out, mostExpensive);
+        writeItem(out, leastExpensive);
+        writeItem(out, highestCalorie);
+        out.writeDouble(totalVegPrepTime);
+        out.writeDouble(totalNonVegPrepTime);
+        out.writeLong(vegCount);
+        out.writeLong(nonVegCount);
+        out.writeLong(availableCount);
+        out.writeBoolean(distribution != null);
+        if (distribution != null) {
+            writeSketches(out, distribution);
+            out.writeInt(distributionByCategory.size());
+            for (Map.Entry<String, QuantileSketch[]> category : distributionByCategory.entrySet()) {
+                writeString(out, category.getKey());
+                writeSketches(out, category.getValue());
+            }
+        }
+    }
+
+    static MenuSummary read(DataInput in) throws IOException {
+        MenuSummary summary = new MenuSummary();
+        summary.itemCount = in.readLong();
+        readGroups(in, summary.priceByCategory, () -> readString(in));
+        readGroups(in, summary.priceByCuisine, () -> readString(in));
+        readGroups(in, summary.priceBySpicyLevel, () -> in.readInt());
+        summary.mostExpensive = readItem(in);
+        summary.leastExpensive = readItem(in);
+        summary.highestCalorie = readItem(in);
+        summary.totalVegPrepTime = in.readDouble();
+        summary.totalNonVegPrepTime = in.readDouble();
+        summary.vegCount = in.readLong();
+        summary.nonVegCount = in.readLong();
+        summary.availableCount = in.readLong();
+        if (in.readBoolean()) {
+            summary.distribution = readSketches(in);
+            int categories = in.readInt();
+            for (int i = 0; i < categories; i++) {
+                summary.distributionByCategory.put(readString(in), readSketches(in));
+            }
+        }
+        return summary;
+    }
+
+    private static <K> void addGroups(Map<K, Group> groups, GroupByTable table, IntFunction<K> keyName) {
+        for (int group = 0; group < table.size(); group++) {
+            groups.put(keyName.apply(table.getKey(group)), new Group(table.getCount(group), table.getSum(group)));
+        }
+    }
+
+    private static <K> void combineGroups(Map<K, Group> groups, Map<K, Group> other) {
+        for (Map.Entry<K, Group> entry : other.entrySet()) {
+            Group group = groups.get(entry.getKey());
+            if (group == null) {
+                groups.put(entry.getKey(), new Group(entry.getValue().count, entry.getValue().sum));
+            } else {
+                group.count += entry.getValue().count;
+                group.sum += entry.getValue().sum;
+            }
+        }
+    }
+
+    // HashMaps filled in first-seen order, like MenuStats returns
+    private static <K> Map<K, Long> counts(Map<K, Group> groups) {
+        Map<K, Long> counts = new HashMap<>();
+        groups.forEach((key, group) -> counts.put(key, group.count));
+        return counts;
+    }
+
+    private static <K> Map<K, Double> averages(Map<K, Group> groups) {
+        Map<K, Double> averages = new HashMap<>();
+        groups.forEach((key, group) -> averages.put(key, group.sum / group.count));
+        return averages;
+    }
+
+    private static <K> void writeGroups(DataOutput out, Map<K, Group> groups) throws IOException {
+        out.writeInt(groups.size());
+        for (Map.Entry<K, Group> entry : groups.entrySet()) {
+            if (entry.getKey() instanceof Integer) {
+                out.writeInt((Integer) entry.getKey());
+            } else {
+                writeString(out, (String) entry.getKey());
+            }
+            out.writeLong(entry.getValue().count);
+            out.writeDouble(entry.getValue().sum);
+        }
+    }
+
+    private interface KeyReader<K> {
+        K read() throws IOException;
+    }
+
+    private static <K> void readGroups(DataInput in, Map<K, Group> groups, KeyReader<K> key) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            groups.put(key.read(), new Group(in.readLong(), in.readDouble()));
+        }
+    }
+
+    private static void writeItem(DataOutput out, MenuItem item) throws IOException {
+        out.writeBoolean(item != null);
+        if (item == null) {
+            return;
+        }
+        out.writeInt(item.getItemID());
+        writeString(out, item.getItemName());
+        out.writeInt(item.getCategoryID());
+        out.writeDouble(item.getPrice());
+        out.writeInt(item.getCalories());
+        out.writeInt(item.getPreparationTime());
+        writeString(out, item.getCuisineType());
+        out.writeBoolean(item.isVegetarian());
+        out.writeInt(item.getSpicyLevel());
+        out.writeBoolean(item.isAvailable());
+        writeString(out, item.getCategoryName());
+        writeString(out, item.getDescription());
+    }
+
+    private static MenuItem readItem(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new MenuItem(in.readInt(), readString(in), in.readInt(), in.readDouble(), in.readInt(), in.readInt(),
+            readString(in), in.readBoolean(), in.readInt(), in.readBoolean(), readString(in), readString(in));
+    }
+
+    // An int byte count and the UTF-8 bytes, since writeUTF() fails past 65535 bytes
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeSketches(DataOutput out, QuantileSketch[] sketches) throws IOException {
+        for (QuantileSketch sketch : sketches) {
+            sketch.write(out);
+        }
+    }
+
+    private static QuantileSketch[] readSketches(DataInput in) throws IOException {
+        QuantileSketch[] sketches = new QuantileSketch[MenuStats.Metric.values().length];
+        for (int metric = 0; metric < sketches.length; metric++) {
+            sketches[metric] = QuantileSketch.read(in);
+        }
+        return sketches;
+    }
+
+    private static void mergeSketches(QuantileSketch[] sketches, QuantileSketch[] other) {
+        for (int metric = 0; metric < sketches.length; metric++) {
+            sketches[metric].merge(other[metric]);
+        }
+    }
+
+    private static QuantileSketch[] copySketches(QuantileSketch[] sketches) {
+        QuantileSketch[] copies = new QuantileSketch[sketches.length];
+        for (int metric = 0; metric < sketches.length; metric++) {
+            copies[metric] = sketches[metric].copy();
+        }
+        return copies;
+    }
+
+    private void requireDistributions() {
+        if (distribution == null) {
+            throw new IllegalStateException("Distributions are only kept by summaries of MenuStats.withDistributions()");
+        }
+    }
+
+    private static MenuItem itemAt(MenuColumns table, int row) {
+        return row >= 0 ? table.getItem(row) : null;
+    }
+
+    private static final class Group {
+        long count;
+        double sum;
+
+        Group(long count, double sum) {
+            this.count = count;
+            this.sum = sum;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+
+// Column-oriented storage for menu items: one primitive array per field, booleans packed
+// into bitsets and the low-cardinality string columns (cuisineType, categoryName,
+// description) replaced by dictionary codes. Scans over a single column read contiguous
+// memory instead of chasing a pointer per MenuItem.
+public class MenuTable implements ColumnAppender {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] itemID;
+    private String[] itemName;
+    private int[] categoryID;
+    private double[] price;
+    private int[] calories;
+    private int[] preparationTime;
+    private int[] cuisineType;
+    private long[] vegetarian;
+    private int[] spicyLevel;
+    private long[] available;
+    private int[] categoryName;
+    private int[] description;
+
+    private final StringDictionary cuisineTypes = new StringDictionary();
+    private final StringDictionary categoryNames = new StringDictionary();
+    private final StringDictionary descriptions = new StringDictionary();
+
+    public MenuTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public MenuTable(int capacity) {
+        capacity = Math.max(capacity, 64);
+        itemID = new int[capacity];
+        itemName = new String[capacity];
+        categoryID = new int[capacity];
+        price = new double[capacity];
+        calories = new int[capacity];
+        preparationTime = new int[capacity];
+        cuisineType = new int[capacity];
+        vegetarian = new long[wordsFor(capacity)];
+        spicyLevel = new int[capacity];
+        available = new long[wordsFor(capacity)];
+        categoryName = new int[capacity];
+        description = new int[capacity];
+    }
+
+    // Wraps fully built columns, e.g. from a MenuSnapshot. The dictionary values are listed
+    // in code order.
+    MenuTable(int size, int[] itemID, String[] itemName, int[] categoryID, double[] price, int[] calories,
+              int[] preparationTime, int[] cuisineType, long[] vegetarian, int[] spicyLevel, long[] available,
+              int[] categoryName, int[] description,
+              List<String> cuisineTypeValues, List<String> categoryNameValues, List<String> descriptionValues) {
+        this.size = size;
+        this.itemID = itemID;
+        this.itemName = itemName;
+        this.categoryID = categoryID;
+        this.price = price;
+        this.calories = calories;
+        this.preparationTime = preparationTime;
+        this.cuisineType = cuisineType;
+        this.vegetarian = vegetarian;
+        this.spicyLevel = spicyLevel;
+        this.available = available;
+        this.categoryName = categoryName;
+        this.description = description;
+        cuisineTypeValues.forEach(cuisineTypes::encode);
+        categoryNameValues.forEach(categoryNames::encode);
+        descriptionValues.forEach(descriptions::encode);
+    }
+
+    public static MenuTable of(List<MenuItem> menuItems) {
+        MenuTable table = new MenuTable(menuItems.size());
+        for (MenuItem item : menuItems) {
+            table.add(item);
+        }
+        return table;
+    }
+
+    public static Collector<MenuItem, MenuTable, MenuTable> collector() {
+        return Collector.of(MenuTable::new, MenuTable::add, MenuTable::append);
+    }
+
+    public void add(MenuItem item) {
+        add(item.getItemID(), item.getItemName(), item.getCategoryID(), item.getPrice(), item.getCalories(),
+            item.getPreparationTime(), cuisineTypes.encode(item.getCuisineType()), item.isVegetarian(),
+            item.getSpicyLevel(), item.isAvailable(), categoryNames.encode(item.getCategoryName()),
+            descriptions.encode(item.getDescription()));
+    }
+
+    // Appends a row whose string columns are already encoded with this table's dictionaries.
+    @Override
+    public void add(int id, String name, int catID, double itemPrice, int itemCalories, int prepTime,
+             int cuisineCode, boolean isVegetarian, int spicy, boolean isAvailable,
+             int categoryCode, int descriptionCode) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        itemID[row] = id;
+        itemName[row] = name;
+        categoryID[row] = catID;
+        price[row] = itemPrice;
+        calories[row] = itemCalories;
+        preparationTime[row] = prepTime;
+        cuisineType[row] = cuisineCode;
+        setBit(vegetarian, row, isVegetarian);
+        spicyLevel[row] = spicy;
+        setBit(available, row, isAvailable);
+        categoryName[row] = categoryCode;
+        description[row] = descriptionCode;
+    }
+
+    // Appends all rows of other after the rows of this table, re-coding its dictionary ids.
+    public MenuTable append(MenuTable other) {
+        int[] cuisineMap = remap(other.cuisineTypes, cuisineTypes);
+        int[] categoryMap = remap(other.categoryNames, categoryNames);
+        int[] descriptionMap = remap(other.descriptions, descriptions);
+        for (int row = 0; row < other.size; row++) {
+            add(other.itemID[row], other.itemName[row], other.categoryID[row], other.price[row],
+                other.calories[row], other.preparationTime[row], cuisineMap[other.cuisineType[row]],
+                other.isVegetarian(row), other.spicyLevel[row], other.isAvailable(row),
+                categoryMap[other.categoryName[row]], descriptionMap[other.description[row]]);
+        }
+        return this;
+    }
+
+    // Concatenates parts in order into one table allocated at its final size, copying each
+    // row once. The dictionaries are merged first; then each part's rows are copied into
+    // their own slice of the columns by one of the tasks handed to runAll, which may run
+    // them in parallel. The bitsets share words across slice boundaries, so they are copied
+    // afterwards on the calling thread, a word at a time.
+    static MenuTable concat(List<MenuTable> parts, Consumer<List<Runnable>> runAll) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        long total = 0;
+        for (MenuTable part : parts) {
+            total += part.size;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many rows for one table: " + total);
+        }
+        MenuTable table = new MenuTable((int) total);
+        List<Runnable> copies = new ArrayList<>();
+        int offset = 0;
+        for (MenuTable part : parts) {
+            int[] cuisineMap = remap(part.cuisineTypes, table.cuisineTypes);
+            int[] categoryMap = remap(part.categoryNames, table.categoryNames);
+            int[] descriptionMap = remap(part.descriptions, table.descriptions);
+            int start = offset;
+            copies.add(() -> table.copyRows(part, start, cuisineMap, categoryMap, descriptionMap));
+            offset += part.size;
+        }
+        runAll.accept(copies);
+        offset = 0;
+        for (MenuTable part : parts) {
+            orBits(part.vegetarian, part.size, table.vegetarian, offset);
+            orBits(part.available, part.size, table.available, offset);
+            offset += part.size;
+        }
+        table.size = offset;
+        return table;
+    }
+
+    // Writes rows [offset, offset + part.size()) from part, re-coding its dictionary ids
+    private void copyRows(MenuTable part, int offset, int[] cuisineMap, int[] categoryMap, int[] descriptionMap) {
+        int count = part.size;
+        System.arraycopy(part.itemID, 0, itemID, offset, count);
+        System.arraycopy(part.itemName, 0, itemName, offset, count);
+        System.arraycopy(part.categoryID, 0, categoryID, offset, count);
+        System.arraycopy(part.price, 0, price, offset, count);
+        System.arraycopy(part.calories, 0, calories, offset, count);
+        System.arraycopy(part.preparationTime, 0, preparationTime, offset, count);
+        System.arraycopy(part.spicyLevel, 0, spicyLevel, offset, count);
+        for (int row = 0; row < count; row++) {
+            cuisineType[offset + row] = cuisineMap[part.cuisineType[row]];
+            categoryName[offset + row] = categoryMap[part.categoryName[row]];
+            description[offset + row] = descriptionMap[part.description[row]];
+        }
+    }
+
+    public MenuItem getItem(int row) {
+        return new MenuItem(itemID[row], itemName[row], categoryID[row], price[row], calories[row],
+            preparationTime[row], getCuisineType(row), isVegetarian(row), spicyLevel[row], isAvailable(row),
+            getCategoryName(row), getDescription(row));
+    }
+
+    public int size() { return size; }
+    public int getItemID(int row) { return itemID[row]; }
+    public String getItemName(int row) { return itemName[row]; }
+    public int getCategoryID(int row) { return categoryID[row]; }
+    public double getPrice(int row) { return price[row]; }
+    public int getCalories(int row) { return calories[row]; }
+    public int getPreparationTime(int row) { return preparationTime[row]; }
+    public String getCuisineType(int row) { return cuisineTypes.decode(cuisineType[row]); }
+    public boolean isVegetarian(int row) { return getBit(vegetarian, row); }
+    public int getSpicyLevel(int row) { return spicyLevel[row]; }
+    public boolean isAvailable(int row) { return getBit(available, row); }
+    public String getCategoryName(int row) { return categoryNames.decode(categoryName[row]); }
+    public String getDescription(int row) { return descriptions.decode(description[row]); }
+
+    // Raw columns for tight scans; only the first size() entries (bits) are valid.
+    int[] itemIDColumn() { return itemID; }
+    String[] itemNameColumn() { return itemName; }
+    int[] categoryIDColumn() { return categoryID; }
+    double[] priceColumn() { return price; }
+    int[] caloriesColumn() { return calories; }
+    int[] preparationTimeColumn() { return preparationTime; }
+    int[] cuisineTypeColumn() { return cuisineType; }
+    int[] categoryNameColumn() { return categoryName; }
+    int[] spicyLevelColumn() { return spicyLevel; }
+    int[] descriptionColumn() { return description; }
+    long[] vegetarianBits() { return vegetarian; }
+    long[] availableBits() { return available; }
+
+    @Override public StringDictionary cuisineTypes() { return cuisineTypes; }
+    @Override public StringDictionary categoryNames() { return categoryNames; }
+    @Override public StringDictionary descriptions() { return descriptions; }
+
+    @Override
+    public void copyTo(int from, int to, ColumnBlock block) {
+        int count = to - from;
+        System.arraycopy(price, from, block.price, 0, count);
+        System.arraycopy(calories, from, block.calories, 0, count);
+        System.arraycopy(preparationTime, from, block.preparationTime, 0, count);
+        System.arraycopy(cuisineType, from, block.cuisineType, 0, count);
+        System.arraycopy(categoryName, from, block.categoryName, 0, count);
+        System.arraycopy(spicyLevel, from, block.spicyLevel, 0, count);
+        System.arraycopy(description, from, block.description, 0, count);
+        ColumnBlock.copyBits(vegetarian, from, count, block.vegetarian);
+        ColumnBlock.copyBits(available, from, count, block.available);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= price.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, price.length + (price.length >> 1));
+        itemID = Arrays.copyOf(itemID, newCapacity);
+        itemName = Arrays.copyOf(itemName, newCapacity);
+        categoryID = Arrays.copyOf(categoryID, newCapacity);
+        price = Arrays.copyOf(price, newCapacity);
+        calories = Arrays.copyOf(calories, newCapacity);
+        preparationTime = Arrays.copyOf(preparationTime, newCapacity);
+        cuisineType = Arrays.copyOf(cuisineType, newCapacity);
+        vegetarian = Arrays.copyOf(vegetarian, wordsFor(newCapacity));
+        spicyLevel = Arrays.copyOf(spicyLevel, newCapacity);
+        available = Arrays.copyOf(available, wordsFor(newCapacity));
+        categoryName = Arrays.copyOf(categoryName, newCapacity);
+        description = Arrays.copyOf(description, newCapacity);
+    }
+
+    private static int[] remap(StringDictionary from, StringDictionary to) {
+        int[] codes = new int[from.size()];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = to.encode(from.decode(code));
+        }
+        return codes;
+    }
+
+    // ORs bits [0, count) of src into dst from bit offset on
+    private static void orBits(long[] src, int count, long[] dst, int offset) {
+        int word = offset >>> 6;
+        int shift = offset & 63;
+        int words = wordsFor(count);
+        for (int i = 0; i < words; i++) {
+            long bits = src[i];
+            if (i == words - 1 && (count & 63) != 0) {
+                bits &= (1L << count) - 1;
+            }
+            dst[word + i] |= bits << shift;
+            if (shift != 0 && word + i + 1 < dst.length) {
+                dst[word + i + 1] |= bits >>> (64 - shift);
+            }
+        }
+    }
+
+    private static int wordsFor(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static void setBit(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >>> 6] |= 1L << index;
+        } else {
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    private static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+}
@@ -0,0 +1,266 @@
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// A MenuTable whose columns live outside the Java heap: in direct ByteBuffers when it is
+// built row by row, or in the pages of a memory-mapped MenuSnapshot (MenuSnapshot.map).
+// The heap only holds the dictionaries and a few buffer objects, so heap use and GC work
+// do not grow with the number of rows. Direct buffers count against
+// -XX:MaxDirectMemorySize, which defaults to the heap size; mapped ones do not.
+//
+// Each column is a single buffer, so a table is limited to 2 GB per column (268M rows for
+// price) and 2 GB of item names.
+public class OffHeapMenuTable implements ColumnAppender {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final boolean readOnly;
+    private int size;
+    private int capacity;
+    private IntBuffer itemID;
+    private IntBuffer categoryID;
+    private DoubleBuffer price;
+    private IntBuffer calories;
+    private IntBuffer preparationTime;
+    private IntBuffer cuisineType;
+    private LongBuffer vegetarian;
+    private IntBuffer spicyLevel;
+    private LongBuffer available;
+    private IntBuffer categoryName;
+    private IntBuffer description;
+    // Item names as (int length, UTF-8 bytes), the same encoding as in a snapshot, and the
+    // offset of each row's bytes in it
+    private ByteBuffer nameBytes;
+    private int nameBytesUsed;
+    private IntBuffer nameStarts;
+
+    private final StringDictionary cuisineTypes = new StringDictionary();
+    private final StringDictionary categoryNames = new StringDictionary();
+    private final StringDictionary descriptions = new StringDictionary();
+
+    public OffHeapMenuTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public OffHeapMenuTable(int capacity) {
+        this.readOnly = false;
+        this.capacity = Math.max(capacity, 64);
+        itemID = allocate(this.capacity * 4L).asIntBuffer();
+        categoryID = allocate(this.capacity * 4L).asIntBuffer();
+        price = allocate(this.capacity * 8L).asDoubleBuffer();
+        calories = allocate(this.capacity * 4L).asIntBuffer();
+        preparationTime = allocate(this.capacity * 4L).asIntBuffer();
+        cuisineType = allocate(this.capacity * 4L).asIntBuffer();
+        vegetarian = allocate(wordsFor(this.capacity) * 8L).asLongBuffer();
+        spicyLevel = allocate(this.capacity * 4L).asIntBuffer();
+        available = allocate(wordsFor(this.capacity) * 8L).asLongBuffer();
+        categoryName = allocate(this.capacity * 4L).asIntBuffer();
+        description = allocate(this.capacity * 4L).asIntBuffer();
+        nameStarts = allocate(this.capacity * 4L).asIntBuffer();
+        nameBytes = allocate(this.capacity * 16L);
+    }
+
+    // Wraps columns that are already filled, e.g. mapped from a MenuSnapshot; the table is
+    // read-only. Buffers must be little-endian; the dictionary values are listed in code order.
+    OffHeapMenuTable(int size, ByteBuffer itemID, ByteBuffer nameBytes, ByteBuffer nameStarts, ByteBuffer categoryID,
+                     ByteBuffer price, ByteBuffer calories, ByteBuffer preparationTime, ByteBuffer cuisineType,
+                     ByteBuffer vegetarian, ByteBuffer spicyLevel, ByteBuffer available, ByteBuffer categoryName,
+                     ByteBuffer description,
+                     List<String> cuisineTypeValues, List<String> categoryNameValues, List<String> descriptionValues) {
+        this.readOnly = true;
+        this.size = size;
+        this.capacity = size;
+        this.itemID = itemID.asIntBuffer();
+        this.nameBytes = nameBytes;
+        this.nameBytesUsed = nameBytes.capacity();
+        this.nameStarts = nameStarts.asIntBuffer();
+        this.categoryID = categoryID.asIntBuffer();
+        this.price = price.asDoubleBuffer();
+        this.calories = calories.asIntBuffer();
+        this.preparationTime = preparationTime.asIntBuffer();
+        this.cuisineType = cuisineType.asIntBuffer();
+        this.vegetarian = vegetarian.asLongBuffer();
+        this.spicyLevel = spicyLevel.asIntBuffer();
+        this.available = available.asLongBuffer();
+        this.categoryName = categoryName.asIntBuffer();
+        this.description = description.asIntBuffer();
+        cuisineTypeValues.forEach(cuisineTypes::encode);
+        categoryNameValues.forEach(categoryNames::encode);
+        descriptionValues.forEach(descriptions::encode);
+    }
+
+    public void add(MenuItem item) {
+        add(item.getItemID(), item.getItemName(), item.getCategoryID(), item.getPrice(), item.getCalories(),
+            item.getPreparationTime(), cuisineTypes.encode(item.getCuisineType()), item.isVegetarian(),
+            item.getSpicyLevel(), item.isAvailable(), categoryNames.encode(item.getCategoryName()),
+            descriptions.encode(item.getDescription()));
+    }
+
+    // Appends a row whose string columns are already encoded with this table's dictionaries.
+    @Override
+    public void add(int id, String name, int catID, double itemPrice, int itemCalories, int prepTime,
+                    int cuisineCode, boolean isVegetarian, int spicy, boolean isAvailable,
+                    int categoryCode, int descriptionCode) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Mapped menu tables are read-only");
+        }
+        ensureCapacity(size + 1);
+        int row = size++;
+        itemID.put(row, id);
+        byte[] nameUtf8 = name.getBytes(StandardCharsets.UTF_8);
+        ensureNameCapacity(nameBytesUsed + 4 + nameUtf8.length);
+        nameBytes.putInt(nameBytesUsed, nameUtf8.length);
+        nameBytes.put(nameBytesUsed + 4, nameUtf8);
+        nameStarts.put(row, nameBytesUsed + 4);
+        nameBytesUsed += 4 + nameUtf8.length;
+        categoryID.put(row, catID);
+        price.put(row, itemPrice);
+        calories.put(row, itemCalories);
+        preparationTime.put(row, prepTime);
+        cuisineType.put(row, cuisineCode);
+        setBit(vegetarian, row, isVegetarian);
+        spicyLevel.put(row, spicy);
+        setBit(available, row, isAvailable);
+        categoryName.put(row, categoryCode);
+        description.put(row, descriptionCode);
+    }
+
+    @Override
+    public MenuItem getItem(int row) {
+        return new MenuItem(getItemID(row), getItemName(row), getCategoryID(row), getPrice(row), getCalories(row),
+            getPreparationTime(row), getCuisineType(row), isVegetarian(row), getSpicyLevel(row), isAvailable(row),
+            getCategoryName(row), getDescription(row));
+    }
+
+    @Override public int size() { return size; }
+    @Override public int getItemID(int row) { return itemID.get(row); }
+    @Override public int getCategoryID(int row) { return categoryID.get(row); }
+    @Override public double getPrice(int row) { return price.get(row); }
+    @Override public int getCalories(int row) { return calories.get(row); }
+    @Override public int getPreparationTime(int row) { return preparationTime.get(row); }
+    @Override public String getCuisineType(int row) { return cuisineTypes.decode(cuisineType.get(row)); }
+    @Override public boolean isVegetarian(int row) { return getBit(vegetarian, row); }
+    @Override public int getSpicyLevel(int row) { return spicyLevel.get(row); }
+    @Override public boolean isAvailable(int row) { return getBit(available, row); }
+    @Override public String getCategoryName(int row) { return categoryNames.decode(categoryName.get(row)); }
+    @Override public String getDescription(int row) { return descriptions.decode(description.get(row)); }
+
+    @Override
+    public String getItemName(int row) {
+        int start = nameStarts.get(row);
+        byte[] bytes = new byte[nameBytes.getInt(start - 4)];
+        nameBytes.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override public StringDictionary cuisineTypes() { return cuisineTypes; }
+    @Override public StringDictionary categoryNames() { return categoryNames; }
+    @Override public StringDictionary descriptions() { return descriptions; }
+
+    // Whole columns, for writing a snapshot; only the first size() values (bitWords for the bitsets) are rows
+    IntBuffer itemIDColumn() { return itemID.duplicate(); }
+    IntBuffer categoryIDColumn() { return categoryID.duplicate(); }
+    DoubleBuffer priceColumn() { return price.duplicate(); }
+    IntBuffer caloriesColumn() { return calories.duplicate(); }
+    IntBuffer preparationTimeColumn() { return preparationTime.duplicate(); }
+    IntBuffer cuisineTypeColumn() { return cuisineType.duplicate(); }
+    IntBuffer spicyLevelColumn() { return spicyLevel.duplicate(); }
+    IntBuffer categoryNameColumn() { return categoryName.duplicate(); }
+    IntBuffer descriptionColumn() { return description.duplicate(); }
+    LongBuffer vegetarianBits() { return vegetarian.duplicate(); }
+    LongBuffer availableBits() { return available.duplicate(); }
+
+    @Override
+    public void copyTo(int from, int to, ColumnBlock block) {
+        int count = to - from;
+        price.get(from, block.price, 0, count);
+        calories.get(from, block.calories, 0, count);
+        preparationTime.get(from, block.preparationTime, 0, count);
+        cuisineType.get(from, block.cuisineType, 0, count);
+        categoryName.get(from, block.categoryName, 0, count);
+        spicyLevel.get(from, block.spicyLevel, 0, count);
+        description.get(from, block.description, 0, count);
+        copyBits(vegetarian, from, count, block.vegetarian);
+        copyBits(available, from, count, block.available);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        int newCapacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, capacity + ((long) capacity >> 1)));
+        itemID = grow(itemID, newCapacity);
+        categoryID = grow(categoryID, newCapacity);
+        price = grow(price, newCapacity);
+        calories = grow(calories, newCapacity);
+        preparationTime = grow(preparationTime, newCapacity);
+        cuisineType = grow(cuisineType, newCapacity);
+        vegetarian = grow(vegetarian, wordsFor(newCapacity));
+        spicyLevel = grow(spicyLevel, newCapacity);
+        available = grow(available, wordsFor(newCapacity));
+        categoryName = grow(categoryName, newCapacity);
+        description = grow(description, newCapacity);
+        nameStarts = grow(nameStarts, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private void ensureNameCapacity(int required) {
+        if (required > nameBytes.capacity()) {
+            ByteBuffer grown = allocate(Math.max(required, nameBytes.capacity() + ((long) nameBytes.capacity() >> 1)));
+            grown.put(0, nameBytes, 0, nameBytesUsed);
+            nameBytes = grown;
+        }
+    }
+
+    // The old buffers' memory is released when the GC collects them, like any direct buffer
+    private static IntBuffer grow(IntBuffer column, int length) {
+        IntBuffer grown = allocate(length * 4L).asIntBuffer();
+        grown.put(0, column, 0, column.capacity());
+        return grown;
+    }
+
+    private static DoubleBuffer grow(DoubleBuffer column, int length) {
+        DoubleBuffer grown = allocate(length * 8L).asDoubleBuffer();
+        grown.put(0, column, 0, column.capacity());
+        return grown;
+    }
+
+    private static LongBuffer grow(LongBuffer column, int length) {
+        LongBuffer grown = allocate(length * 8L).asLongBuffer();
+        grown.put(0, column, 0, column.capacity());
+        return grown;
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Off-heap menu column would exceed 2 GB");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Copies bits [from, from + count) of bits to bits [0, count) of dst.
+    private static void copyBits(LongBuffer bits, int from, int count, long[] dst) {
+        int firstWord = from >>> 6;
+        int words = Math.min(bits.capacity() - firstWord, (((from & 63) + count + 63) >>> 6));
+        long[] src = new long[words];
+        bits.get(firstWord, src, 0, words);
+        ColumnBlock.copyBits(src, from & 63, count, dst);
+    }
+
+    private static int wordsFor(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static void setBit(LongBuffer bits, int index, boolean value) {
+        long word = bits.get(index >>> 6);
+        bits.put(index >>> 6, value ? word | (1L << index) : word & ~(1L << index));
+    }
+
+    private static boolean getBit(LongBuffer bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+}
@@ -0,0 +1,257 @@
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+// Splits a CSV file into line-aligned byte ranges and parses them on a ForkJoinPool.
+// Each range is folded into its own partial result with the given Collector, and the
+// partial results are combined in file order. Counts, min/max and item order match a
+// sequential read; floating-point sums can differ in the last digits because they are
+// added up per range. aggregate() does the same for row ranges of a table already read,
+// e.g. to build MenuStats or TopK per range and combine them.
+public class ParallelCSVReader {
+    // Keeps every range well below the 2 GB limit of a single mapping
+    private static final long MAX_CHUNK = 1L << 30;
+    // More ranges than threads lets fast workers steal from slow ones
+    private static final int CHUNKS_PER_THREAD = 4;
+    // Below this a range costs more to schedule and combine than to aggregate
+    private static final int MIN_ROWS_PER_RANGE = 1 << 14;
+
+    private final int threads;
+
+    public ParallelCSVReader(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public List<MenuItem> readCSV(String filePath) {
+        return readCSV(filePath, Collectors.toList());
+    }
+
+    public <A, R> R readCSV(String filePath, Collector<MenuItem, A, R> collector) {
+        BiConsumer<A, MenuItem> accumulator = collector.accumulator();
+        RangeParser<A> parser = (buf, length) -> {
+            A partial = collector.supplier().get();
+            MappedCSVReader.parseLines(buf, 0, length, MappedCSVReader.itemHandler(item -> accumulator.accept(partial, item)));
+            return partial;
+        };
+        A result = read(filePath, parser, collector.combiner());
+        return collector.finisher().apply(result != null ? result : collector.supplier().get());
+    }
+
+    // Loads each range straight into its own MenuTable, then copies the tables in file order
+    // into one table of the total size, each into its own slice on the pool (MenuTable.concat).
+    public MenuTable readTable(String filePath) {
+        return readTable(filePath, EnumSet.allOf(MenuColumns.Column.class));
+    }
+
+    // Loads only the given columns; see MappedCSVReader.tableHandler(ColumnAppender, Set).
+    public MenuTable readTable(String filePath, Set<MenuColumns.Column> columns) {
+        RangeParser<List<MenuTable>> parser = (buf, length) -> {
+            MenuTable partial = new MenuTable();
+            MappedCSVReader.parseLines(buf, 0, length, MappedCSVReader.tableHandler(partial, columns));
+            return List.of(partial);
+        };
+        ForkJoinPool pool = newPool();
+        try {
+            List<MenuTable> partials = read(pool, filePath, parser, (left, right) -> {
+                List<MenuTable> both = new ArrayList<>(left);
+                both.addAll(right);
+                return both;
+            });
+            if (partials == null) {
+                return new MenuTable();
+            }
+            return MenuTable.concat(partials, copies -> runAll(pool, copies));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Aggregates rows [0, size) in ranges on the pool and combines the results in row order,
+    // like readCSV does with the ranges of a file.
+    public <A> A aggregate(int size, RangeAggregator<A> aggregator, BinaryOperator<A> combiner) {
+        int ranges = (int) Math.max(1, Math.min((long) threads * CHUNKS_PER_THREAD, size / MIN_ROWS_PER_RANGE));
+        ForkJoinPool pool = newPool();
+        try {
+            return pool.invoke(new RowRangeTask<>(size, ranges, 0, ranges, aggregator, combiner));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Builds the result of rows [from, to)
+    public interface RangeAggregator<A> {
+        A aggregate(int from, int to);
+    }
+
+    // Runs tasks on pool and returns when all are done, rethrowing the first failure
+    private static void runAll(ForkJoinPool pool, List<Runnable> tasks) {
+        List<ForkJoinTask<?>> forkJoinTasks = tasks.stream().map(ForkJoinTask::adapt).collect(Collectors.toList());
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(forkJoinTasks);
+        }));
+    }
+
+    private ForkJoinPool newPool() {
+        return new ForkJoinPool(threads, PhaseProfile.forkJoinThreadFactory(), null, false);
+    }
+
+    private <A> A read(String filePath, RangeParser<A> parser, BinaryOperator<A> combiner) {
+        ForkJoinPool pool = newPool();
+        try {
+            return read(pool, filePath, parser, combiner);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private <A> A read(ForkJoinPool pool, String filePath, RangeParser<A> parser, BinaryOperator<A> combiner) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long[] bounds = splitPoints(channel);
+            return pool.invoke(new ChunkTask<>(channel, bounds, 0, bounds.length - 1, parser, combiner));
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Returns the range boundaries: the first starts after the header and each one after
+    // that starts just past a '\n', so no line is split between two ranges.
+    private long[] splitPoints(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long dataStart = nextLineStart(channel, 0, size);
+        long dataSize = size - dataStart;
+        long chunks = Math.max((long) threads * CHUNKS_PER_THREAD, (dataSize + MAX_CHUNK - 1) / MAX_CHUNK);
+        chunks = Math.max(1, Math.min(chunks, dataSize / 64 + 1));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(dataStart);
+        for (long i = 1; i < chunks; i++) {
+            long target = dataStart + dataSize * i / chunks;
+            long bound = nextLineStart(channel, Math.max(target, bounds.get(bounds.size() - 1)), size);
+            if (bound > bounds.get(bounds.size() - 1) && bound < size) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Returns the offset just past the first '\n' at or after position, or size if there is none.
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(64 * 1024);
+        while (position < size) {
+            block.clear();
+            int read = channel.read(block, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (block.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private interface RangeParser<A> {
+        A parse(MappedByteBuffer buf, int length);
+    }
+
+    private static class ChunkTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int first;
+        private final int last;
+        private final RangeParser<A> parser;
+        private final BinaryOperator<A> combiner;
+
+        ChunkTask(FileChannel channel, long[] bounds, int first, int last, RangeParser<A> parser,
+                  BinaryOperator<A> combiner) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.first = first;
+            this.last = last;
+            this.parser = parser;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            if (last - first > 1) {
+                int mid = (first + last) >>> 1;
+                ChunkTask<A> left = new ChunkTask<>(channel, bounds, first, mid, parser, combiner);
+                ChunkTask<A> right = new ChunkTask<>(channel, bounds, mid, last, parser, combiner);
+                right.fork();
+                A leftResult = left.compute();
+                return combiner.apply(leftResult, right.join());
+            }
+
+            long start = bounds[first];
+            long length = bounds[last] - start;
+            try {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                return parser.parse(buf, (int) length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Ranges [first, last) of ranges equal parts of [0, size), split in halves like ChunkTask
+    private static class RowRangeTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final int size;
+        private final int ranges;
+        private final int first;
+        private final int last;
+        private final RangeAggregator<A> aggregator;
+        private final BinaryOperator<A> combiner;
+
+        RowRangeTask(int size, int ranges, int first, int last, RangeAggregator<A> aggregator,
+                     BinaryOperator<A> combiner) {
+            this.size = size;
+            this.ranges = ranges;
+            this.first = first;
+            this.last = last;
+            this.aggregator = aggregator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            if (last - first > 1) {
+                int mid = (first + last) >>> 1;
+                RowRangeTask<A> left = new RowRangeTask<>(size, ranges, first, mid, aggregator, combiner);
+                RowRangeTask<A> right = new RowRangeTask<>(size, ranges, mid, last, aggregator, combiner);
+                right.fork();
+                A leftResult = left.compute();
+                return combiner.apply(leftResult, right.join());
+            }
+            return aggregator.aggregate((int) ((long) size * first / ranges), (int) ((long) size * last / ranges));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+
+// Wall time and allocations of the phases of one analysis (Main --profile), and the bytes
+// and rows per second of the phases that count what they processed, so a regression shows up
+// as one phase getting slower or allocating more. Phases run one after another: begin() ends
+// the previous one.
+//
+// Allocations are read from HotSpot's per-thread counters. A thread's counter goes with it,
+// so the readers start their pool threads from threadFactory() or forkJoinThreadFactory(),
+// which hand each thread's final count, as it exits, to every profile not yet printed.
+public class PhaseProfile {
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounters();
+    // Profiles that want the counts of exiting threads; weak, so an unprinted profile is not kept
+    private static final Set<PhaseProfile> OPEN =
+        Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    // Thread id to the bytes it had allocated when it exited, for the threads that exited
+    // since this profile was created; ids are not reused
+    private final Map<Long, Long> exited = new ConcurrentHashMap<>();
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> nanos = new ArrayList<>();
+    private final List<Long> allocated = new ArrayList<>();
+    private final List<Long> bytes = new ArrayList<>();
+    private final List<Long> rows = new ArrayList<>();
+    private String phase;
+    private long phaseStart;
+    private Map<Long, Long> allocatedAtStart;
+    private long phaseBytes;
+    private long phaseRows;
+
+    public PhaseProfile() {
+        OPEN.add(this);
+    }
+
+    // The bytes and rows the current phase processed, for its throughput; -1 for either when
+    // the phase does not process the input that way
+    public void count(long bytes, long rows) {
+        phaseBytes = bytes;
+        phaseRows = rows;
+    }
+
+    public void begin(String name) {
+        end();
+        phase = name;
+        phaseBytes = -1;
+        phaseRows = -1;
+        allocatedAtStart = allocatedPerThread();
+        phaseStart = System.nanoTime();
+    }
+
+    public void end() {
+        if (phase == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - phaseStart;
+        long bytesAllocated = -1;
+        if (allocatedAtStart != null) {
+            bytesAllocated = 0;
+            for (Map.Entry<Long, Long> thread : allocatedPerThread().entrySet()) {
+                // Threads started during the phase allocated everything they report
+                bytesAllocated += thread.getValue() - allocatedAtStart.getOrDefault(thread.getKey(), 0L);
+            }
+        }
+        names.add(phase);
+        nanos.add(elapsed);
+        allocated.add(bytesAllocated);
+        bytes.add(phaseBytes);
+        rows.add(phaseRows);
+        phase = null;
+    }
+
+    // One value per phase and one for the whole analysis, e.g.
+    // read and parse: 412.3 ms, 213.6 MB/s, 2425913 rows/s, 301.2 MB allocated
+    // The total's throughput is end to end: what the first phase read over the whole time.
+    public void print(ReportWriter output, String input) {
+        end();
+        OPEN.remove(this);
+        output.begin(input, "profile: " + input);
+        long totalNanos = 0;
+        long totalAllocated = 0;
+        for (int i = 0; i < names.size(); i++) {
+            print(output, names.get(i), nanos.get(i), bytes.get(i), rows.get(i), allocated.get(i));
+            totalNanos += nanos.get(i);
+            totalAllocated = totalAllocated < 0 || allocated.get(i) < 0 ? -1 : totalAllocated + allocated.get(i);
+        }
+        boolean any = !names.isEmpty();
+        print(output, "total", totalNanos, any ? bytes.get(0) : -1, any ? rows.get(0) : -1, totalAllocated);
+        output.end();
+    }
+
+    private void print(ReportWriter output, String name, long elapsed, long phaseBytes, long phaseRows,
+            long bytesAllocated) {
+        double seconds = elapsed / 1e9;
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("wallMillis", elapsed / 1e6);
+        values.put("bytesPerSecond", phaseBytes < 0 ? null : (long) (phaseBytes / seconds));
+        values.put("rowsPerSecond", phaseRows < 0 ? null : (long) (phaseRows / seconds));
+        values.put("allocatedBytes", bytesAllocated < 0 ? null : bytesAllocated);
+        StringBuilder text = new StringBuilder(String.format("%.1f ms", elapsed / 1e6));
+        if (phaseBytes >= 0) {
+            text.append(String.format(", %.1f MB/s", phaseBytes / seconds / (1 << 20)));
+        }
+        if (phaseRows >= 0) {
+            text.append(String.format(", %d rows/s", (long) (phaseRows / seconds)));
+        }
+        text.append(bytesAllocated < 0 ? ", allocations not measured"
+            : String.format(", %.1f MB allocated", bytesAllocated / (double) (1 << 20)));
+        output.value(name, values, text.toString());
+    }
+
+    // Pool threads that keep their allocation count when they exit
+    static ThreadFactory threadFactory() {
+        return task -> new Thread(() -> {
+            try {
+                task.run();
+            } finally {
+                exiting();
+            }
+        });
+    }
+
+    static ForkJoinPool.ForkJoinWorkerThreadFactory forkJoinThreadFactory() {
+        return pool -> new ForkJoinWorkerThread(pool) {
+            @Override
+            protected void onTermination(Throwable exception) {
+                exiting();
+                super.onTermination(exception);
+            }
+        };
+    }
+
+    private static void exiting() {
+        if (THREADS == null) {
+            return;
+        }
+        long id = Thread.currentThread().getId();
+        long bytes = THREADS.getCurrentThreadAllocatedBytes();
+        synchronized (OPEN) {
+            for (PhaseProfile profile : OPEN) {
+                profile.exited.put(id, bytes);
+            }
+        }
+    }
+
+    private Map<Long, Long> allocatedPerThread() {
+        if (THREADS == null) {
+            return null;
+        }
+        long[] ids = THREADS.getAllThreadIds();
+        long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+        Map<Long, Long> perThread = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            // -1 for a thread that exited since getAllThreadIds()
+            if (bytes[i] >= 0) {
+                perThread.put(ids[i], bytes[i]);
+            }
+        }
+        // Includes the threads still finishing after they recorded their count
+        perThread.putAll(exited);
+        return perThread;
+    }
+
+    // null on JVMs without per-thread allocation counters
+    private static com.sun.management.ThreadMXBean allocationCounters() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+        if (!counters.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        counters.setThreadAllocatedMemoryEnabled(true);
+        return counters;
+    }
+}
@@ -0,0 +1,286 @@
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Mergeable KLL quantile sketch over double values. Level h holds items that each stand
+// for 2^h inputs; when the sketch is over capacity, every other item (starting at a
+// pseudo-random offset) of the lowest full level is promoted to the next level. Levels
+// above 0 are kept sorted, so only the small level 0 buffer is sorted on add().
+//
+// Memory is O(k) values (about 3k) regardless of how many are added. With k = 200 the rank error of
+// a quantile query is about 1.65% of the count (99% confidence), e.g. p90 returns a value
+// whose true rank lies between p88.35 and p91.65; larger k lowers the error roughly as 1/k.
+// min and max are exact, and merging sketches gives the same error bound as one sketch
+// over all the values.
+public class QuantileSketch {
+    public static final int DEFAULT_K = 200;
+    private static final int MIN_LEVEL_CAPACITY = 8;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int[] capacities = new int[1];
+    private double[] scratch = new double[0];
+    private int retained;
+    private int totalCapacity;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    // xorshift state for the compaction offsets; fixed seed keeps results reproducible
+    private long random = 0x9E3779B97F4A7C15L;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_LEVEL_CAPACITY);
+        }
+        this.k = k;
+        capacities[0] = k;
+        totalCapacity = k;
+        levels[0] = new double[k];
+    }
+
+    public void add(double value) {
+        if (count++ == 0) {
+            min = value;
+            max = value;
+        } else if (value < min) {
+            min = value;
+        } else if (value > max) {
+            max = value;
+        }
+        if (retained >= totalCapacity) {
+            compress();
+        }
+        if (sizes[0] == levels[0].length) {
+            levels[0] = Arrays.copyOf(levels[0], sizes[0] * 2);
+        }
+        levels[0][sizes[0]++] = value;
+        retained++;
+    }
+
+    // Folds other's values into this sketch; other is left unchanged.
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        count += other.count;
+        while (levels.length < other.levels.length) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            append(h, other.levels[h], other.sizes[h]);
+            // Levels above 0 are kept sorted
+            if (h > 0) {
+                Arrays.sort(levels[h], 0, sizes[h]);
+            }
+        }
+        while (retained > totalCapacity) {
+            compress();
+        }
+        return this;
+    }
+
+    // An independent sketch with the same contents.
+    QuantileSketch copy() {
+        return new QuantileSketch(k).merge(this);
+    }
+
+    // Serialized form, as stored by SummaryCache: k, count, min, max, the random state, then
+    // the number of levels and each level's size and items.
+    void write(DataOutput out) throws IOException {
+        out.writeInt(k);
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeLong(random);
+        out.writeInt(levels.length);
+        for (int h = 0; h < levels.length; h++) {
+            out.writeInt(sizes[h]);
+            for (int i = 0; i < sizes[h]; i++) {
+                out.writeDouble(levels[h][i]);
+            }
+        }
+    }
+
+    static QuantileSketch read(DataInput in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch(in.readInt());
+        sketch.count = in.readLong();
+        sketch.min = in.readDouble();
+        sketch.max = in.readDouble();
+        sketch.random = in.readLong();
+        int height = in.readInt();
+        if (height < 1 || height > 64) {
+            throw new IOException("Invalid sketch height: " + height);
+        }
+        while (sketch.levels.length < height) {
+            sketch.addLevel();
+        }
+        for (int h = 0; h < height; h++) {
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Invalid sketch level size: " + size);
+            }
+            sketch.ensureRoom(h, size);
+            for (int i = 0; i < size; i++) {
+                sketch.levels[h][i] = in.readDouble();
+            }
+            sketch.sizes[h] = size;
+            sketch.retained += size;
+        }
+        return sketch;
+    }
+
+    public long getCount() { return count; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+
+    // Returns an estimate of the value at rank q * count, for q in [0, 1], or NaN when empty.
+    public double getQuantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n++] = 1L << h;
+            }
+        }
+        sortByValue(values, weights);
+
+        long target = (long) Math.ceil(q * count);
+        long cumulative = 0;
+        for (int i = 0; i < n; i++) {
+            cumulative += weights[i];
+            if (cumulative >= target) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    // Compacts the lowest level that is at capacity, creating a new top level if needed.
+    // Called when the sketch as a whole is at capacity, so such a level always exists.
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] >= capacities[h]) {
+                if (h + 1 == levels.length) {
+                    addLevel();
+                }
+                double[] level = levels[h];
+                int size = sizes[h];
+                int promoted = size / 2;
+                if (h == 0) {
+                    Arrays.sort(level, 0, size);
+                }
+                // Every other item, merged into the next level so it stays sorted
+                int offset = nextBit();
+                double[] next = levels[h + 1];
+                int nextSize = sizes[h + 1];
+                double[] merged = nextSize + promoted <= next.length && scratch.length >= nextSize + promoted
+                    ? scratch : new double[Math.max(next.length, nextSize + promoted)];
+                int i = 0;
+                int j = 0;
+                int n = 0;
+                while (i < promoted && j < nextSize) {
+                    double candidate = level[2 * i + offset];
+                    merged[n++] = candidate <= next[j] ? level[2 * (i++) + offset] : next[j++];
+                }
+                while (i < promoted) {
+                    merged[n++] = level[2 * (i++) + offset];
+                }
+                while (j < nextSize) {
+                    merged[n++] = next[j++];
+                }
+                // Swap buffers: the old level array becomes the scratch space
+                levels[h + 1] = merged;
+                scratch = merged == scratch ? next : scratch;
+                sizes[h + 1] = n;
+                // With an odd size the largest item stays behind, so the promoted pairs
+                // cover the rest exactly
+                int kept = size & 1;
+                if (kept == 1) {
+                    level[0] = level[size - 1];
+                }
+                sizes[h] = kept;
+                retained -= size - kept - promoted;
+                return;
+            }
+        }
+    }
+
+    private void addLevel() {
+        int height = levels.length;
+        levels = Arrays.copyOf(levels, height + 1);
+        sizes = Arrays.copyOf(sizes, height + 1);
+        capacities = new int[height + 1];
+        totalCapacity = 0;
+        // Capacities shrink by 2/3 per level below the top, so the lower levels stay small
+        for (int h = 0; h <= height; h++) {
+            capacities[h] = Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3.0, height - h)));
+            totalCapacity += capacities[h];
+        }
+        levels[height] = new double[capacities[height]];
+    }
+
+    private void append(int h, double[] values, int length) {
+        ensureRoom(h, length);
+        System.arraycopy(values, 0, levels[h], sizes[h], length);
+        sizes[h] += length;
+        retained += length;
+    }
+
+    private void ensureRoom(int h, int length) {
+        if (sizes[h] + length > levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], Math.max(sizes[h] + length, levels[h].length * 2));
+        }
+    }
+
+    private int nextBit() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random & 1);
+    }
+
+    private static void sortByValue(double[] values, long[] weights) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[values.length];
+        long[] sortedWeights = new long[weights.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, values.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+}
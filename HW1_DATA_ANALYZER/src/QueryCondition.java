@@ -0,0 +1,270 @@
+
+import java.util.Set;
+
+// The where clause of a MenuQuery: comparisons of a column with a constant, combined with
+// and, or and not. Types are checked when a condition is built; compile() then resolves
+// dictionary constants to codes and returns one lambda per node, specialized for the
+// column, operator and constant.
+public abstract class QueryCondition {
+    public enum Op {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+
+    QueryCondition() {
+    }
+
+    // constant is a Double for numeric columns, a Boolean for vegetarian and available, and
+    // a String for the text columns, which only support EQ and NE.
+    public static QueryCondition compare(MenuColumns.Column column, Op op, Object constant) {
+        return new Comparison(column, op, constant);
+    }
+
+    public static QueryCondition and(QueryCondition left, QueryCondition right) {
+        return new Junction(left, right, true);
+    }
+
+    public static QueryCondition or(QueryCondition left, QueryCondition right) {
+        return new Junction(left, right, false);
+    }
+
+    public static QueryCondition not(QueryCondition condition) {
+        return new Negation(condition);
+    }
+
+    abstract MenuQuery.RowFilter compile(MenuColumns table);
+
+    abstract void addColumns(Set<MenuColumns.Column> columns);
+
+    // Whether some row of the group may satisfy the condition, judging by its zone maps
+    // alone; false means MenuColumnFile can skip the group.
+    abstract boolean canMatch(MenuColumnFile.RowGroup group);
+
+    // Whether some row of the group may fail the condition, so not can be answered too.
+    abstract boolean canFail(MenuColumnFile.RowGroup group);
+
+    private static final class Comparison extends QueryCondition {
+        private final MenuColumns.Column column;
+        private final Op op;
+        private final Object constant;
+
+        Comparison(MenuColumns.Column column, Op op, Object constant) {
+            String name = MenuQuery.name(column);
+            if (MenuQuery.isText(column)) {
+                if (!(constant instanceof String) || (op != Op.EQ && op != Op.NE)) {
+                    throw new IllegalArgumentException(name + " can only be compared with = or != to a string");
+                }
+            } else if (MenuQuery.isBoolean(column)) {
+                if (!(constant instanceof Boolean) || (op != Op.EQ && op != Op.NE)) {
+                    throw new IllegalArgumentException(name + " can only be compared with = or != to true or false");
+                }
+            } else if (!(constant instanceof Double)) {
+                throw new IllegalArgumentException(name + " can only be compared to a number");
+            }
+            this.column = column;
+            this.op = op;
+            this.constant = constant;
+        }
+
+        @Override
+        MenuQuery.RowFilter compile(MenuColumns table) {
+            boolean equal = op == Op.EQ;
+            switch (column) {
+                case CUISINE_TYPE: {
+                    int code = table.cuisineTypes().find((String) constant);
+                    return equal ? (block, row) -> block.cuisineType[row] == code
+                        : (block, row) -> block.cuisineType[row] != code;
+                }
+                case CATEGORY_NAME: {
+                    int code = table.categoryNames().find((String) constant);
+                    return equal ? (block, row) -> block.categoryName[row] == code
+                        : (block, row) -> block.categoryName[row] != code;
+                }
+                case DESCRIPTION: {
+                    int code = table.descriptions().find((String) constant);
+                    return equal ? (block, row) -> block.description[row] == code
+                        : (block, row) -> block.description[row] != code;
+                }
+                case ITEM_NAME: {
+                    String value = (String) constant;
+                    return (block, row) -> value.equals(table.getItemName(block.rowBase + row)) == equal;
+                }
+                case VEGETARIAN: {
+                    long bit = (Boolean) constant == equal ? 1 : 0;
+                    return (block, row) -> ((block.vegetarian[row >>> 6] >>> row) & 1L) == bit;
+                }
+                case AVAILABLE: {
+                    long bit = (Boolean) constant == equal ? 1 : 0;
+                    return (block, row) -> ((block.available[row >>> 6] >>> row) & 1L) == bit;
+                }
+                default:
+                    return compile(MenuQuery.value(table, column), op, (Double) constant);
+            }
+        }
+
+        private static MenuQuery.RowFilter compile(MenuQuery.RowValue value, Op op, double constant) {
+            switch (op) {
+                case EQ: return (block, row) -> value.get(block, row) == constant;
+                case NE: return (block, row) -> value.get(block, row) != constant;
+                case LT: return (block, row) -> value.get(block, row) < constant;
+                case LE: return (block, row) -> value.get(block, row) <= constant;
+                case GT: return (block, row) -> value.get(block, row) > constant;
+                default: return (block, row) -> value.get(block, row) >= constant;
+            }
+        }
+
+        @Override
+        void addColumns(Set<MenuColumns.Column> columns) {
+            columns.add(column);
+        }
+
+        @Override
+        boolean canMatch(MenuColumnFile.RowGroup group) {
+            return canHold(group, op);
+        }
+
+        @Override
+        boolean canFail(MenuColumnFile.RowGroup group) {
+            return canHold(group, negate(op));
+        }
+
+        // Compares the constant with the group's min and max; the coded string columns
+        // compare dictionary codes, the booleans 0 and 1.
+        private boolean canHold(MenuColumnFile.RowGroup group, Op op) {
+            double value;
+            if (column == MenuColumns.Column.ITEM_NAME) {
+                return true;
+            } else if (MenuQuery.isText(column)) {
+                value = group.find(column, (String) constant);
+                if (value < 0) {
+                    // No row anywhere holds the string
+                    return op == Op.NE;
+                }
+            } else if (MenuQuery.isBoolean(column)) {
+                value = (Boolean) constant ? 1 : 0;
+            } else {
+                value = (Double) constant;
+            }
+            double min = group.getMin(column);
+            double max = group.getMax(column);
+            if (Double.isNaN(min) || Double.isNaN(max)) {
+                return true;
+            }
+            switch (op) {
+                case EQ: return min <= value && value <= max;
+                case NE: return min != value || max != value;
+                case LT: return min < value;
+                case LE: return min <= value;
+                case GT: return max > value;
+                default: return max >= value;
+            }
+        }
+
+        private static Op negate(Op op) {
+            switch (op) {
+                case EQ: return Op.NE;
+                case NE: return Op.EQ;
+                case LT: return Op.GE;
+                case LE: return Op.GT;
+                case GT: return Op.LE;
+                default: return Op.LT;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return MenuQuery.name(column) + " " + op + " " + MenuQuery.literal(constant);
+        }
+    }
+
+    private static final class Junction extends QueryCondition {
+        private final QueryCondition left;
+        private final QueryCondition right;
+        private final boolean and;
+
+        Junction(QueryCondition left, QueryCondition right, boolean and) {
+            this.left = left;
+            this.right = right;
+            this.and = and;
+        }
+
+        @Override
+        MenuQuery.RowFilter compile(MenuColumns table) {
+            MenuQuery.RowFilter first = left.compile(table);
+            MenuQuery.RowFilter second = right.compile(table);
+            return and ? (block, row) -> first.test(block, row) && second.test(block, row)
+                : (block, row) -> first.test(block, row) || second.test(block, row);
+        }
+
+        @Override
+        void addColumns(Set<MenuColumns.Column> columns) {
+            left.addColumns(columns);
+            right.addColumns(columns);
+        }
+
+        @Override
+        boolean canMatch(MenuColumnFile.RowGroup group) {
+            return and ? left.canMatch(group) && right.canMatch(group) : left.canMatch(group) || right.canMatch(group);
+        }
+
+        @Override
+        boolean canFail(MenuColumnFile.RowGroup group) {
+            return and ? left.canFail(group) || right.canFail(group) : left.canFail(group) && right.canFail(group);
+        }
+
+        @Override
+        public String toString() {
+            return operand(left) + (and ? " and " : " or ") + operand(right);
+        }
+
+        // An or inside an and needs parentheses; everything else binds tighter
+        private String operand(QueryCondition condition) {
+            boolean or = condition instanceof Junction && !((Junction) condition).and;
+            return and && or ? "(" + condition + ")" : condition.toString();
+        }
+    }
+
+    private static final class Negation extends QueryCondition {
+        private final QueryCondition condition;
+
+        Negation(QueryCondition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        MenuQuery.RowFilter compile(MenuColumns table) {
+            MenuQuery.RowFilter negated = condition.compile(table);
+            return (block, row) -> !negated.test(block, row);
+        }
+
+        @Override
+        void addColumns(Set<MenuColumns.Column> columns) {
+            condition.addColumns(columns);
+        }
+
+        @Override
+        boolean canMatch(MenuColumnFile.RowGroup group) {
+            return condition.canFail(group);
+        }
+
+        @Override
+        boolean canFail(MenuColumnFile.RowGroup group) {
+            return condition.canMatch(group);
+        }
+
+        @Override
+        public String toString() {
+            return "not " + (condition instanceof Comparison ? condition.toString() : "(" + condition + ")");
+        }
+    }
+}
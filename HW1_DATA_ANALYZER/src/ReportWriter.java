@@ -0,0 +1,225 @@
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Where DataAnalyzer prints its reports. Each report line is a label and a value: a number,
+// a string, a map (nested for the cross-tabs) or a list (of top items), in one of three formats:
+//   text  Label: value, as Main always printed it
+//   json  one object per input, on one line: {"input": "menu_items.csv", "Label": value, ...}
+//   csv   input,report,key,value rows, one per entry of a map or list value
+// Notes (files written, row groups read) are not report values; the structured formats send
+// them to stderr so their output stays parseable.
+public abstract class ReportWriter {
+    public enum Format {
+        TEXT, JSON, CSV
+    }
+
+    protected final PrintStream out;
+
+    protected ReportWriter(PrintStream out) {
+        this.out = out;
+    }
+
+    public static ReportWriter of(Format format, PrintStream out) {
+        switch (format) {
+            case JSON: return new Json(out);
+            case CSV: return new Csv(out);
+            default: return new Text(out);
+        }
+    }
+
+    public static ReportWriter text() {
+        return new Text(System.out);
+    }
+
+    // Starts the reports on one input; header, if not null, is printed above them as text
+    public abstract void begin(String input, String header);
+
+    public void value(String label, Object value) {
+        value(label, value, String.valueOf(value));
+    }
+
+    // text is how the text format prints value, e.g. "Item_14 ($14.85)" for {item=Item_14, price=14.85}
+    public abstract void value(String label, Object value, String text);
+
+    public abstract void note(String text);
+
+    public abstract void end();
+
+    private static final class Text extends ReportWriter {
+        Text(PrintStream out) {
+            super(out);
+        }
+
+        @Override
+        public void begin(String input, String header) {
+            if (header != null) {
+                out.println("--- " + header + " ---");
+            }
+        }
+
+        @Override
+        public void value(String label, Object value, String text) {
+            out.println(label + ": " + text);
+        }
+
+        @Override
+        public void note(String text) {
+            out.println(text);
+        }
+
+        @Override
+        public void end() {
+            out.flush();
+        }
+    }
+
+    private static final class Json extends ReportWriter {
+        private final StringBuilder line = new StringBuilder();
+
+        Json(PrintStream out) {
+            super(out);
+        }
+
+        @Override
+        public void begin(String input, String header) {
+            line.setLength(0);
+            line.append("{\"input\": ");
+            string(input);
+        }
+
+        @Override
+        public void value(String label, Object value, String text) {
+            line.append(", ");
+            string(label);
+            line.append(": ");
+            json(value);
+        }
+
+        @Override
+        public void note(String text) {
+            System.err.println(text);
+        }
+
+        @Override
+        public void end() {
+            out.println(line.append('}'));
+            out.flush();
+        }
+
+        private void json(Object value) {
+            if (value instanceof Map) {
+                line.append('{');
+                boolean first = true;
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    line.append(first ? "" : ", ");
+                    string(String.valueOf(entry.getKey()));
+                    line.append(": ");
+                    json(entry.getValue());
+                    first = false;
+                }
+                line.append('}');
+            } else if (value instanceof List) {
+                line.append('[');
+                boolean first = true;
+                for (Object element : (List<?>) value) {
+                    line.append(first ? "" : ", ");
+                    json(element);
+                    first = false;
+                }
+                line.append(']');
+            } else if (value instanceof Double || value instanceof Float) {
+                // JSON has no NaN or infinities, e.g. for an average over no rows
+                double number = ((Number) value).doubleValue();
+                line.append(Double.isFinite(number) ? Double.toString(number) : "null");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                line.append(value);
+            } else if (value == null) {
+                line.append("null");
+            } else {
+                string(value.toString());
+            }
+        }
+
+        private void string(String text) {
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    line.append('\\').append(c);
+                } else if (c < 0x20) {
+                    line.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                } else {
+                    line.append(c);
+                }
+            }
+            line.append('"');
+        }
+    }
+
+    private static final class Csv extends ReportWriter {
+        private String input;
+        private boolean headerWritten;
+
+        Csv(PrintStream out) {
+            super(out);
+        }
+
+        @Override
+        public void begin(String input, String header) {
+            this.input = input;
+            if (!headerWritten) {
+                out.println("input,report,key,value");
+                headerWritten = true;
+            }
+        }
+
+        @Override
+        public void value(String label, Object value, String text) {
+            List<String> path = new ArrayList<>();
+            rows(label, path, value);
+        }
+
+        // One row per leaf of a (nested) map or list, its keys or indexes joined with '/', e.g.
+        // Italian/2, or 0/price for the first of the top items
+        private void rows(String label, List<String> path, Object value) {
+            if (value instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    path.add(String.valueOf(entry.getKey()));
+                    rows(label, path, entry.getValue());
+                    path.remove(path.size() - 1);
+                }
+            } else if (value instanceof List) {
+                List<?> elements = (List<?>) value;
+                for (int i = 0; i < elements.size(); i++) {
+                    path.add(Integer.toString(i));
+                    rows(label, path, elements.get(i));
+                    path.remove(path.size() - 1);
+                }
+            } else {
+                out.println(field(input) + ',' + field(label) + ',' + field(String.join("/", path)) + ','
+                    + field(String.valueOf(value)));
+            }
+        }
+
+        @Override
+        public void note(String text) {
+            System.err.println(text);
+        }
+
+        @Override
+        public void end() {
+            out.flush();
+        }
+
+        private static String field(String text) {
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                return text;
+            }
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+    }
+}
@@ -0,0 +1,461 @@
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Joins a sales CSV to the menu on itemID and totals units, revenue and calories sold per
+// category and cuisine. The sales file needs an ItemID column and may have a Quantity
+// column (1 per line otherwise); other columns are ignored.
+//
+// The menu is the build side: an open-addressing table from itemID to an entry holding the
+// item's price, calories and dictionary codes, and the units sold so far. The sales file
+// is streamed through it one mapped window at a time, so its size never matters. When the
+// table would not fit the memory budget, both sides are first hash-partitioned on itemID
+// to temp files (Grace hash join) and joined one partition at a time, the partition's sales
+// streamed through its table in buffer-sized reads. A menu with
+// duplicate itemIDs has its sales counted against the first row with the id.
+public class SalesJoin {
+    // Entry (key, price, calories, category, cuisine, units) plus two hash slots per entry
+    private static final int BYTES_PER_ITEM = 4 + 8 + 4 + 4 + 4 + 8 + 2 * 4;
+    // Partition records: itemID, price, calories, category, cuisine / itemID, quantity
+    private static final int MENU_RECORD_BYTES = 4 + 8 + 4 + 4 + 4;
+    private static final int SALE_RECORD_BYTES = 4 + 4;
+    private static final int MAX_PARTITIONS = 1024;
+    private static final long MIN_BUDGET = 1 << 20;
+    // Largest slice of the sales file mapped at once
+    private static final long MAX_WINDOW = 1L << 30;
+
+    private final long memoryBudget;
+    private final Path tempDir;
+
+    public SalesJoin(long memoryBudget) {
+        this(memoryBudget, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    public SalesJoin(long memoryBudget, Path tempDir) {
+        if (memoryBudget < MIN_BUDGET) {
+            throw new IllegalArgumentException("memory budget must be at least 1 MB: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        this.tempDir = tempDir;
+    }
+
+    public Result join(MenuColumns menu, Path salesPath) throws IOException {
+        Result result = new Result(menu);
+        long tableBytes = (long) menu.size() * BYTES_PER_ITEM;
+        if (tableBytes <= memoryBudget) {
+            ItemTable items = new ItemTable(menu.size());
+            ColumnBlock.forEach(menu, 0, menu.size(), block -> {
+                for (int row = block.from; row < block.to; row++) {
+                    items.add(menu.getItemID(block.rowBase + row), block.price[row], block.calories[row],
+                        block.categoryName[row], block.cuisineType[row]);
+                }
+            });
+            scanSales(salesPath, (itemID, quantity) -> result.addSale(items.addUnits(itemID, quantity)));
+            result.addUnitsSold(items);
+            return result;
+        }
+
+        // Partitions are sized for half the budget, since hashing does not split them evenly
+        int partitions = (int) Math.min(MAX_PARTITIONS, Math.max(2, 2 * tableBytes / memoryBudget + 1));
+        Partitions menuPartitions = new Partitions(partitions, MENU_RECORD_BYTES);
+        Partitions salePartitions = new Partitions(partitions, SALE_RECORD_BYTES);
+        try {
+            int bufferSize = (int) Math.max(4096, Math.min(1 << 20, memoryBudget / (2 * partitions)));
+            menuPartitions.open(bufferSize);
+            try {
+                ColumnBlock.forEach(menu, 0, menu.size(), block -> {
+                    for (int row = block.from; row < block.to; row++) {
+                        int itemID = menu.getItemID(block.rowBase + row);
+                        try {
+                            menuPartitions.record(itemID).putInt(itemID).putDouble(block.price[row])
+                                .putInt(block.calories[row]).putInt(block.categoryName[row])
+                                .putInt(block.cuisineType[row]);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            menuPartitions.finish();
+            salePartitions.open(bufferSize);
+            scanSales(salesPath, (itemID, quantity) -> salePartitions.record(itemID).putInt(itemID).putInt(quantity));
+            salePartitions.finish();
+
+            // Both sides of a partition are read back through one buffer, so only the partition's
+            // ItemTable grows with the data; its sales are streamed through it however many there are
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+            for (int partition = 0; partition < partitions; partition++) {
+                ItemTable items = new ItemTable((int) (menuPartitions.size(partition) / MENU_RECORD_BYTES));
+                menuPartitions.forEach(partition, buffer, records -> items.add(records.getInt(), records.getDouble(),
+                    records.getInt(), records.getInt(), records.getInt()));
+                salePartitions.forEach(partition, buffer,
+                    records -> result.addSale(items.addUnits(records.getInt(), records.getInt())));
+                result.addUnitsSold(items);
+            }
+            return result;
+        } finally {
+            menuPartitions.delete();
+            salePartitions.delete();
+        }
+    }
+
+    // Totals of one join; maps are keyed by category or cuisine name.
+    public static final class Result {
+        private final MenuColumns menu;
+        private long salesLines;
+        private long unmatchedLines;
+        // Indexed by dictionary code
+        private final long[] unitsPerCategory;
+        private final double[] revenuePerCategory;
+        private final long[] caloriesPerCategory;
+        private final long[] unitsPerCuisine;
+        private final double[] revenuePerCuisine;
+
+        Result(MenuColumns menu) {
+            this.menu = menu;
+            int categories = menu.categoryNames().size();
+            int cuisines = menu.cuisineTypes().size();
+            unitsPerCategory = new long[categories];
+            revenuePerCategory = new double[categories];
+            caloriesPerCategory = new long[categories];
+            unitsPerCuisine = new long[cuisines];
+            revenuePerCuisine = new double[cuisines];
+        }
+
+        private void addSale(boolean matched) {
+            salesLines++;
+            if (!matched) {
+                unmatchedLines++;
+            }
+        }
+
+        // Units are summed per item first, so each item's revenue is one multiplication
+        private void addUnitsSold(ItemTable items) {
+            for (int entry = 0; entry < items.size; entry++) {
+                long units = items.units[entry];
+                if (units == 0) {
+                    continue;
+                }
+                double revenue = units * items.price[entry];
+                unitsPerCategory[items.category[entry]] += units;
+                revenuePerCategory[items.category[entry]] += revenue;
+                caloriesPerCategory[items.category[entry]] += units * items.calories[entry];
+                unitsPerCuisine[items.cuisine[entry]] += units;
+                revenuePerCuisine[items.cuisine[entry]] += revenue;
+            }
+        }
+
+        public long getSalesLines() { return salesLines; }
+        // Lines whose itemID is not on the menu
+        public long getUnmatchedLines() { return unmatchedLines; }
+
+        public long getUnitsSold() { return Arrays.stream(unitsPerCategory).sum(); }
+        public double getRevenue() { return Arrays.stream(revenuePerCategory).sum(); }
+        public long getCaloriesSold() { return Arrays.stream(caloriesPerCategory).sum(); }
+
+        public Map<String, Long> getUnitsSoldPerCategory() {
+            return counts(unitsPerCategory, menu.categoryNames());
+        }
+
+        public Map<String, Double> getRevenuePerCategory() {
+            return sums(revenuePerCategory, unitsPerCategory, menu.categoryNames());
+        }
+
+        public Map<String, Long> getCaloriesSoldPerCategory() {
+            return counts(caloriesPerCategory, unitsPerCategory, menu.categoryNames());
+        }
+
+        public Map<String, Long> getUnitsSoldPerCuisine() {
+            return counts(unitsPerCuisine, menu.cuisineTypes());
+        }
+
+        public Map<String, Double> getRevenuePerCuisine() {
+            return sums(revenuePerCuisine, unitsPerCuisine, menu.cuisineTypes());
+        }
+
+        // Only groups that sold something
+        private static Map<String, Long> counts(long[] units, StringDictionary names) {
+            return counts(units, units, names);
+        }
+
+        private static Map<String, Long> counts(long[] values, long[] units, StringDictionary names) {
+            Map<String, Long> counts = new HashMap<>();
+            for (int code = 0; code < values.length; code++) {
+                if (units[code] > 0) {
+                    counts.put(names.decode(code), values[code]);
+                }
+            }
+            return counts;
+        }
+
+        private static Map<String, Double> sums(double[] values, long[] units, StringDictionary names) {
+            Map<String, Double> sums = new HashMap<>();
+            for (int code = 0; code < values.length; code++) {
+                if (units[code] > 0) {
+                    sums.put(names.decode(code), values[code]);
+                }
+            }
+            return sums;
+        }
+    }
+
+    private interface SaleHandler {
+        void sale(int itemID, int quantity) throws IOException;
+    }
+
+    // Calls handler for every line of the sales file, in file order
+    private static void scanSales(Path salesPath, SaleHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(salesPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            int itemField = -1;
+            int quantityField = -1;
+            while (position < size) {
+                long length = Math.min(MAX_WINDOW, size - position);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                if (position + length < size) {
+                    end = MappedCSVReader.lastLineEnd(buf, end);
+                    if (end == 0) {
+                        throw new IOException("Line longer than " + MAX_WINDOW + " bytes at offset " + position);
+                    }
+                }
+                int start = 0;
+                if (position == 0) {
+                    start = MappedCSVReader.skipLine(buf, 0, end);
+                    List<String> header = Arrays.asList(CsvBytes.toString(buf, 0, start).trim().split(","));
+                    itemField = header.indexOf("ItemID");
+                    quantityField = header.indexOf("Quantity");
+                    if (itemField < 0) {
+                        throw new IOException("No ItemID column in " + salesPath + ": " + header);
+                    }
+                }
+                parseSales(buf, start, end, itemField, quantityField, handler);
+                position += end;
+            }
+        }
+    }
+
+    private static void parseSales(ByteBuffer buf, int from, int to, int itemField, int quantityField,
+            SaleHandler handler) throws IOException {
+        int lineStart = from;
+        while (lineStart < to) {
+            int field = 0;
+            int fieldStart = lineStart;
+            int fieldEnd;
+            int itemID = 0;
+            int quantity = 1;
+            boolean hasItem = false;
+            int i = lineStart;
+            for (;; i++) {
+                byte b = i < to ? buf.get(i) : (byte) '\n';
+                if (b != ',' && b != '\n') {
+                    continue;
+                }
+                fieldEnd = b == '\n' && i > fieldStart && buf.get(i - 1) == '\r' ? i - 1 : i;
+                if (field == itemField) {
+                    hasItem = fieldEnd > fieldStart;
+                    itemID = hasItem ? CsvBytes.parseInt(buf, fieldStart, fieldEnd) : 0;
+                } else if (field == quantityField && fieldEnd > fieldStart) {
+                    quantity = CsvBytes.parseInt(buf, fieldStart, fieldEnd);
+                }
+                if (b == '\n') {
+                    break;
+                }
+                field++;
+                fieldStart = i + 1;
+            }
+            if (hasItem) {
+                handler.sale(itemID, quantity);
+            } else if (field > 0 || fieldEnd > lineStart) {
+                // Blank lines are skipped; anything else needs an item
+                throw new IllegalArgumentException("No ItemID in line: " + CsvBytes.toString(buf, lineStart, fieldEnd));
+            }
+            lineStart = i + 1;
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Open addressing from itemID to entry; the first entry added for an id keeps it.
+    private static final class ItemTable {
+        private static final int EMPTY = -1;
+
+        private final int[] slots;
+        private final int[] keys;
+        private final double[] price;
+        private final int[] calories;
+        private final int[] category;
+        private final int[] cuisine;
+        private final long[] units;
+        private int size;
+
+        ItemTable(int expectedItems) {
+            int capacity = Integer.highestOneBit(Math.max(4, expectedItems) * 2 - 1) << 1;
+            slots = new int[capacity];
+            Arrays.fill(slots, EMPTY);
+            int entries = Math.max(1, expectedItems);
+            keys = new int[entries];
+            price = new double[entries];
+            calories = new int[entries];
+            category = new int[entries];
+            cuisine = new int[entries];
+            units = new long[entries];
+        }
+
+        void add(int itemID, double itemPrice, int itemCalories, int itemCategory, int itemCuisine) {
+            int mask = slots.length - 1;
+            int slot = hash(itemID) & mask;
+            while (slots[slot] != EMPTY) {
+                if (keys[slots[slot]] == itemID) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = size;
+            keys[size] = itemID;
+            price[size] = itemPrice;
+            calories[size] = itemCalories;
+            category[size] = itemCategory;
+            cuisine[size] = itemCuisine;
+            size++;
+        }
+
+        // Returns false if itemID is not in the table
+        boolean addUnits(int itemID, int quantity) {
+            int mask = slots.length - 1;
+            int slot = hash(itemID) & mask;
+            while (true) {
+                int entry = slots[slot];
+                if (entry == EMPTY) {
+                    return false;
+                }
+                if (keys[entry] == itemID) {
+                    units[entry] += quantity;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    private interface RecordHandler {
+        void record(ByteBuffer records);
+    }
+
+    // Temp files of fixed-size records, one per hash partition of itemID
+    private final class Partitions {
+        private final int count;
+        private final int recordBytes;
+        private final Path[] files;
+        private FileChannel[] channels;
+        private ByteBuffer[] buffers;
+
+        Partitions(int count, int recordBytes) {
+            this.count = count;
+            this.recordBytes = recordBytes;
+            this.files = new Path[count];
+        }
+
+        void open(int bufferSize) throws IOException {
+            channels = new FileChannel[count];
+            buffers = new ByteBuffer[count];
+            for (int partition = 0; partition < count; partition++) {
+                files[partition] = Files.createTempFile(tempDir, "menu-join-", ".part");
+                channels[partition] = FileChannel.open(files[partition], StandardOpenOption.WRITE);
+                buffers[partition] = ByteBuffer.allocateDirect(Math.max(recordBytes, bufferSize / recordBytes * recordBytes));
+            }
+        }
+
+        // The buffer to put the next record of itemID's partition into. The high bits of the
+        // hash pick the partition, so the low bits still spread keys over the slots of each
+        // partition's ItemTable.
+        ByteBuffer record(int itemID) throws IOException {
+            int partition = (int) (((hash(itemID) & 0xFFFFFFFFL) * count) >>> 32);
+            ByteBuffer buffer = buffers[partition];
+            if (buffer.remaining() < recordBytes) {
+                flush(partition);
+            }
+            return buffer;
+        }
+
+        private void flush(int partition) throws IOException {
+            ByteBuffer buffer = buffers[partition];
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channels[partition].write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void finish() throws IOException {
+            for (int partition = 0; partition < count; partition++) {
+                flush(partition);
+                channels[partition].close();
+            }
+            channels = null;
+            buffers = null;
+        }
+
+        long size(int partition) throws IOException {
+            return Files.size(files[partition]);
+        }
+
+        // Calls handler once per record of partition, with buffer positioned at the record;
+        // the file is read a buffer at a time
+        void forEach(int partition, ByteBuffer buffer, RecordHandler handler) throws IOException {
+            buffer.clear();
+            try (FileChannel channel = FileChannel.open(files[partition], StandardOpenOption.READ)) {
+                int read;
+                do {
+                    read = channel.read(buffer);
+                    buffer.flip();
+                    while (buffer.remaining() >= recordBytes) {
+                        handler.record(buffer);
+                    }
+                    // A record split by the end of the buffer is completed by the next read
+                    buffer.compact();
+                } while (read >= 0);
+            }
+        }
+
+        void delete() {
+            if (channels != null) {
+                for (FileChannel channel : channels) {
+                    try {
+                        if (channel != null) {
+                            channel.close();
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            for (Path file : files) {
+                try {
+                    if (file != null) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Analyzes a dataset split into one CSV per restaurant. Shards are parsed concurrently,
+// each into its own MenuTable that is reduced to a MenuSummary and then dropped, so the
+// memory held at the end depends on the number of groups and shards, not on total rows;
+// while running, at most one table per thread is alive.
+public class ShardedCSVReader {
+    private final int threads;
+
+    public ShardedCSVReader(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    // True if path names several shards: a directory, or a pattern with glob characters.
+    public static boolean isSharded(String path) {
+        return hasGlob(path) || Files.isDirectory(Paths.get(path));
+    }
+
+    // The shards named by path, sorted by file name: every *.csv and *.csv.gz in a directory, the files
+    // matching a glob such as data/*.csv or data/**/menu_*.csv, or path itself.
+    public static List<Path> findShards(String path) throws IOException {
+        Path base;
+        PathMatcher matcher;
+        int depth = 1;
+        if (hasGlob(path)) {
+            // Walk from the deepest directory that has no glob characters, only as deep as
+            // the pattern reaches unless it has **
+            int firstGlob = firstGlob(path);
+            int separator = Math.max(path.lastIndexOf('/', firstGlob), path.lastIndexOf('\\', firstGlob));
+            String pattern = separator >= 0 ? path : "./" + path;
+            base = Paths.get(separator >= 0 ? path.substring(0, separator + 1) : ".");
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            String rest = path.substring(separator + 1);
+            depth = rest.contains("**") ? Integer.MAX_VALUE : rest.split("[/\\\\]").length;
+        } else if (Files.isDirectory(Paths.get(path))) {
+            base = Paths.get(path);
+            matcher = file -> file.getFileName().toString().endsWith(".csv") || file.getFileName().toString().endsWith(".csv.gz");
+        } else {
+            List<Path> single = new ArrayList<>();
+            single.add(Paths.get(path));
+            return single;
+        }
+        try (Stream<Path> files = Files.walk(base, depth)) {
+            return files.filter(Files::isRegularFile).filter(matcher::matches).sorted().collect(Collectors.toList());
+        }
+    }
+
+    // One summary per shard, in shard order. A shard that fails to load is reported and left out.
+    public Map<Path, MenuSummary> summarizeShards(List<Path> shards) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, PhaseProfile.threadFactory());
+        Map<Path, MenuSummary> summaries = new LinkedHashMap<>();
+        try {
+            List<Future<MenuSummary>> futures = new ArrayList<>();
+            for (Path shard : shards) {
+                futures.add(pool.submit(() -> summarize(shard)));
+            }
+            for (int i = 0; i < shards.size(); i++) {
+                try {
+                    summaries.put(shards.get(i), futures.get(i).get());
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+        return summaries;
+    }
+
+    // Merges summaries in iteration order, so ties go to the earlier shard.
+    public static MenuSummary merge(Collection<MenuSummary> summaries) {
+        MenuSummary total = new MenuSummary();
+        for (MenuSummary summary : summaries) {
+            total.combine(summary);
+        }
+        return total;
+    }
+
+    private static MenuSummary summarize(Path shard) {
+        String path = shard.toString();
+        MenuTable table = GzipCSVReader.isGzip(path) ? new GzipCSVReader(1).readTable(path) : new MappedCSVReader().readTable(path);
+        return MenuSummary.of(MenuStats.of(table));
+    }
+
+    private static boolean hasGlob(String path) {
+        return firstGlob(path) < path.length();
+    }
+
+    private static int firstGlob(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return path.length();
+    }
+}
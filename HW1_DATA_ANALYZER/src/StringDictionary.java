@@ -0,0 +1,128 @@
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Assigns a small int code to each distinct String, in first-seen order, and keeps one
+// shared instance per value. Values can be looked up either as Strings or directly as
+// UTF-8 bytes, so a reader only allocates a String the first time it sees a value.
+public class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    // Open-addressing index over the UTF-8 bytes of each value; slots hold code + 1, 0 is empty
+    private int[] slots = new int[16];
+    private byte[][] valueBytes = new byte[8][];
+    private int[] valueHashes = new int[8];
+
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            code = add(value, bytes, hash(bytes, 0, bytes.length));
+        }
+        return code;
+    }
+
+    public int encode(ByteBuffer buf, int from, int to) {
+        int hash = hash(buf, from, to);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int code = slots[slot] - 1;
+            if (valueHashes[code] == hash && equals(valueBytes[code], buf, from, to)) {
+                return code;
+            }
+        }
+        byte[] bytes = new byte[to - from];
+        buf.get(from, bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        Integer existing = codes.get(value);
+        return existing != null ? existing : add(value, bytes, hash);
+    }
+
+    // Returns the shared instance equal to value.
+    public String intern(String value) {
+        return values.get(encode(value));
+    }
+
+    // Returns the code of value, or -1 if it has none; unlike encode(), never adds it.
+    public int find(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    public String decode(int code) {
+        return values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    private int add(String value, byte[] bytes, int hash) {
+        int code = values.size();
+        codes.put(value, code);
+        values.add(value);
+        if (code == valueBytes.length) {
+            valueBytes = Arrays.copyOf(valueBytes, code * 2);
+            valueHashes = Arrays.copyOf(valueHashes, code * 2);
+        }
+        valueBytes[code] = bytes;
+        valueHashes[code] = hash;
+        if ((code + 1) * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int c = 0; c < code; c++) {
+                insertSlot(c);
+            }
+        }
+        insertSlot(code);
+        return code;
+    }
+
+    private void insertSlot(int code) {
+        int mask = slots.length - 1;
+        int slot = valueHashes[code] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = code + 1;
+    }
+
+    private static boolean equals(byte[] bytes, ByteBuffer buf, int from, int to) {
+        if (bytes.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != buf.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return mix(h);
+    }
+
+    private static int hash(ByteBuffer buf, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + buf.get(i);
+        }
+        return mix(h);
+    }
+
+    // Spreads the low bits, which select the slot
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
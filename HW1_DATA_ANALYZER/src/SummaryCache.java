@@ -0,0 +1,86 @@
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32C;
+
+// The MenuSummary of a CSV saved next to it, so a run over an unchanged file can print the
+// reports without reading the rows at all. The file is a few KB however large the CSV is
+// (more with quantile sketches), so it is read and written whole.
+//
+// Layout (big-endian, as written by DataOutputStream):
+//   header   magic "MENUSUMM", int version, source fingerprint (size, mtime, checksum)
+//   summary  see MenuSummary.write()
+//   trailer  CRC32C of everything before it
+public final class SummaryCache {
+    private static final long MAGIC = 0x4D454E5553554D4DL; // "MENUSUMM"
+    // 2: strings are an int byte count and UTF-8 bytes, not writeUTF()
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8 + 4 + 8 + 8 + 8;
+
+    private SummaryCache() {
+    }
+
+    // A cached summary and the fingerprint of the input it covers.
+    public static final class Entry {
+        private final FileFingerprint source;
+        private final MenuSummary summary;
+
+        Entry(FileFingerprint source, MenuSummary summary) {
+            this.source = source;
+            this.summary = summary;
+        }
+
+        public FileFingerprint getSource() { return source; }
+        public MenuSummary getSummary() { return summary; }
+    }
+
+    public static void write(MenuSummary summary, FileFingerprint source, Path cachePath) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(source.getSize());
+        out.writeLong(source.getLastModified());
+        out.writeLong(source.getChecksum());
+        summary.write(out);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        Path tmp = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns null if the file is not a summary cache of the current version; throws if it
+    // is one but fails its checksum.
+    public static Entry read(Path cachePath) throws IOException {
+        byte[] bytes = Files.readAllBytes(cachePath);
+        if (bytes.length < HEADER_BYTES + 8) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong()) {
+            throw new IOException("Summary cache checksum mismatch: " + cachePath);
+        }
+        FileFingerprint source = new FileFingerprint(in.readLong(), in.readLong(), in.readLong());
+        MenuSummary summary = MenuSummary.read(in);
+        if (in.available() != 8) {
+            throw new IOException("Unexpected data after the summary in " + cachePath);
+        }
+        return new Entry(source, summary);
+    }
+}
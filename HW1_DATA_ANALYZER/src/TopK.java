@@ -0,0 +1,121 @@
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// The k highest or lowest rows of a menu table by price, calories or preparation time,
+// over the whole table or per category or cuisine, found in one pass with a bounded heap
+// per group (O(k) memory each at most). Instances built over different row ranges of the same
+// table can be merged with combine().
+public class TopK {
+    public enum GroupBy { NONE, CATEGORY, CUISINE }
+
+    private final MenuColumns table;
+    private final int k;
+    private final MenuStats.Metric metric;
+    private final boolean highest;
+    private final GroupBy groupBy;
+    // Heap per group code; a single heap at index 0 for GroupBy.NONE
+    private TopKHeap[] heaps = new TopKHeap[0];
+
+    private TopK(MenuColumns table, int k, MenuStats.Metric metric, boolean highest, GroupBy groupBy) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        this.table = table;
+        this.k = k;
+        this.metric = metric;
+        this.highest = highest;
+        this.groupBy = groupBy;
+    }
+
+    public static TopK of(MenuColumns table, int k, MenuStats.Metric metric, boolean highest, GroupBy groupBy) {
+        return of(table, k, metric, highest, groupBy, 0, table.size());
+    }
+
+    public static TopK of(MenuColumns table, int k, MenuStats.Metric metric, boolean highest, GroupBy groupBy,
+            int from, int to) {
+        TopK topK = new TopK(table, k, metric, highest, groupBy);
+        topK.addRows(from, to);
+        return topK;
+    }
+
+    private void addRows(int from, int to) {
+        ColumnBlock.forEach(table, from, to, this::addBlock);
+    }
+
+    private void addBlock(ColumnBlock block) {
+        int[] groups = groupBy == GroupBy.CATEGORY ? block.categoryName
+            : groupBy == GroupBy.CUISINE ? block.cuisineType : null;
+        double[] price = block.price;
+        int[] calories = block.calories;
+        int[] preparationTime = block.preparationTime;
+        // Lowest-k is highest-k of the negated keys
+        double sign = highest ? 1 : -1;
+
+        for (int row = block.from; row < block.to; row++) {
+            double value;
+            switch (metric) {
+                case PRICE: value = price[row]; break;
+                case CALORIES: value = calories[row]; break;
+                default: value = preparationTime[row]; break;
+            }
+            heapOf(groups == null ? 0 : groups[row]).offer(sign * value, row + block.rowBase);
+        }
+    }
+
+    // Folds in the rows kept by other, which must select the same way over the same table.
+    public TopK combine(TopK other) {
+        if (other.table != table || other.k != k || other.metric != metric || other.highest != highest
+                || other.groupBy != groupBy) {
+            throw new IllegalArgumentException("Cannot combine top-k selections of different queries");
+        }
+        for (int code = 0; code < other.heaps.length; code++) {
+            if (other.heaps[code] != null) {
+                heapOf(code).merge(other.heaps[code]);
+            }
+        }
+        return this;
+    }
+
+    public MenuColumns getTable() { return table; }
+    public int getK() { return k; }
+    public MenuStats.Metric getMetric() { return metric; }
+    public boolean isHighest() { return highest; }
+    public GroupBy getGroupBy() { return groupBy; }
+
+    // Row indexes into getTable(), best first, for GroupBy.NONE.
+    public int[] getRows() {
+        if (groupBy != GroupBy.NONE) {
+            throw new IllegalStateException("Top-k is grouped by " + groupBy);
+        }
+        return heaps.length > 0 && heaps[0] != null ? heaps[0].getRows() : new int[0];
+    }
+
+    // Row indexes into getTable(), best first, per category or cuisine name.
+    public Map<String, int[]> getRowsPerGroup() {
+        if (groupBy == GroupBy.NONE) {
+            throw new IllegalStateException("Top-k is not grouped");
+        }
+        StringDictionary names = groupBy == GroupBy.CATEGORY ? table.categoryNames() : table.cuisineTypes();
+        Map<String, int[]> rows = new HashMap<>();
+        for (int code = 0; code < heaps.length; code++) {
+            if (heaps[code] != null) {
+                rows.put(names.decode(code), heaps[code].getRows());
+            }
+        }
+        return rows;
+    }
+
+    private TopKHeap heapOf(int code) {
+        if (code >= heaps.length) {
+            heaps = Arrays.copyOf(heaps, Math.max(code + 1, heaps.length * 2));
+        }
+        TopKHeap heap = heaps[code];
+        if (heap == null) {
+            heap = new TopKHeap(k);
+            heaps[code] = heap;
+        }
+        return heap;
+    }
+}
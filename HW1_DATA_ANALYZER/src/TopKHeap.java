@@ -0,0 +1,108 @@
+
+import java.util.Arrays;
+
+// Bounded heap that keeps the k rows with the highest keys seen so far. Ties are broken in
+// favor of the lower row index, so k = 1 picks the same row as Collections.max over the
+// rows in order. Keys and rows are kept in primitive arrays that grow, up to k, as rows are
+// kept, so a k far above the row count costs no more than the rows; once full, offer()
+// allocates nothing.
+public class TopKHeap {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int k;
+    // Binary min-heap on (key, -row): the root is the row that would be evicted next
+    private double[] keys;
+    private int[] rows;
+    private int size;
+
+    public TopKHeap(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        this.k = k;
+        this.keys = new double[Math.min(k, INITIAL_CAPACITY)];
+        this.rows = new int[keys.length];
+    }
+
+    public void offer(double key, int row) {
+        if (size < k) {
+            if (size == keys.length) {
+                int capacity = (int) Math.min(k, 2L * size);
+                keys = Arrays.copyOf(keys, capacity);
+                rows = Arrays.copyOf(rows, capacity);
+            }
+            keys[size] = key;
+            rows[size] = row;
+            siftUp(size++);
+        } else if (worse(keys[0], rows[0], key, row)) {
+            keys[0] = key;
+            rows[0] = row;
+            siftDown(0);
+        }
+    }
+
+    // Folds in the rows kept by other; other is left unchanged.
+    public TopKHeap merge(TopKHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.keys[i], other.rows[i]);
+        }
+        return this;
+    }
+
+    public int size() { return size; }
+
+    // Rows best first.
+    public int[] getRows() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> a.equals(b) ? 0 : worse(keys[a], rows[a], keys[b], rows[b]) ? 1 : -1);
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = rows[order[i]];
+        }
+        return sorted;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(keys[i], rows[i], keys[parent], rows[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && worse(keys[child + 1], rows[child + 1], keys[child], rows[child])) {
+                child++;
+            }
+            if (!worse(keys[child], rows[child], keys[i], rows[i])) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+
+    private static boolean worse(double key, int row, double otherKey, int otherRow) {
+        return key < otherKey || (key == otherKey && row > otherRow);
+    }
+}